@@ -2,29 +2,36 @@ package com.example.appmanager.controller;
 
 import com.example.appmanager.model.ApplicationFile;
 import com.example.appmanager.repository.ApplicationFileRepository;
-import com.example.appmanager.service.DuplicateDetectorService;
-import com.example.appmanager.service.FileScannerService;
-import com.example.appmanager.service.RuleCategorizationService;
+import com.example.appmanager.service.DirectoryWatchService;
+import com.example.appmanager.service.DuplicateCluster;
+import com.example.appmanager.service.DuplicateGroupService;
+import com.example.appmanager.service.ScanJob;
+import com.example.appmanager.service.ScanJobService;
+import com.example.appmanager.service.ScanOptions;
+import com.example.appmanager.service.SimilarFile;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.File;
-import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
 import java.util.*;
 
 @Controller
 public class ApplicationManagerController {
     @Autowired
-    private FileScannerService fileScannerService;
+    private DuplicateGroupService duplicateGroupService;
     @Autowired
-    private DuplicateDetectorService duplicateDetectorService;
-    @Autowired
-    private RuleCategorizationService ruleCategorizationService;
+    private ScanJobService scanJobService;
     @Autowired
     private ApplicationFileRepository applicationFileRepository;
+    @Autowired
+    private DirectoryWatchService directoryWatchService;
 
     @GetMapping("/index")
     public String home() {
@@ -42,6 +49,7 @@ public class ApplicationManagerController {
             List<ApplicationFile> files = applicationFileRepository.findAll();
             model.addAttribute("fileCount", files.size());
             model.addAttribute("files", files);
+            model.addAttribute("watchedRoots", directoryWatchService.getWatchedRoots());
             return "debug";
         } catch (Exception e) {
             model.addAttribute("error", e.getMessage());
@@ -53,85 +61,88 @@ public class ApplicationManagerController {
     public String scanDirectory(@RequestParam("directory") String directory, 
                                @RequestParam(value = "enableCategorization", required = false) Boolean enableCategorization,
                                @RequestParam(value = "categories", required = false) List<String> categories,
+                               @RequestParam(value = "exactOnly", required = false) Boolean exactOnly,
+                               @RequestParam(value = "watch", required = false) Boolean watch,
+                               @RequestParam(value = "includeGlobs", required = false) String includeGlobs,
+                               @RequestParam(value = "excludeGlobs", required = false) String excludeGlobs,
+                               @RequestParam(value = "minSizeKb", required = false) Long minSizeKb,
+                               @RequestParam(value = "skipHidden", required = false) Boolean skipHidden,
+                               Principal principal,
                                Model model) {
+        if (!new File(directory).isDirectory()) {
+            model.addAttribute("error", "Directory not found: " + directory);
+            return "index";
+        }
+        ScanOptions options;
         try {
-            List<ApplicationFile> files = fileScannerService.scanDirectory(directory);
-            
-            // Apply categorization if enabled
-            if (enableCategorization != null && enableCategorization && categories != null && !categories.isEmpty()) {
-                categorizeAndOrganizeFiles(files, directory, categories);
-            }
-            
-            ruleCategorizationService.categorize(files);
-            applicationFileRepository.deleteAll();
-            applicationFileRepository.saveAll(files);
-            model.addAttribute("files", files);
-            model.addAttribute("categorizationEnabled", enableCategorization);
-            model.addAttribute("selectedCategories", categories);
-            return "scan-result";
-        } catch (IOException | NoSuchAlgorithmException e) {
-            model.addAttribute("error", e.getMessage());
+            options = new ScanOptions(includeGlobs, excludeGlobs, minSizeKb != null ? minSizeKb * 1024 : 0,
+                    Boolean.TRUE.equals(skipHidden));
+        } catch (IllegalArgumentException e) {
+            model.addAttribute("error", "Invalid file pattern: " + e.getMessage());
             return "index";
         }
+        List<String> selectedCategories = Boolean.TRUE.equals(enableCategorization) ? categories : null;
+        ScanJob job = scanJobService.submit(new ScanJob(principal.getName(), directory, options,
+                Boolean.TRUE.equals(exactOnly), Boolean.TRUE.equals(watch), selectedCategories));
+        return "redirect:/scan/jobs/" + job.getId();
     }
 
-    private void categorizeAndOrganizeFiles(List<ApplicationFile> files, String baseDirectory, List<String> categories) {
-        // Define file extensions for each category
-        Map<String, List<String>> categoryExtensions = new HashMap<>();
-        categoryExtensions.put("photos", Arrays.asList("jpg", "jpeg", "png", "gif", "bmp", "tiff", "webp"));
-        categoryExtensions.put("documents", Arrays.asList("doc", "docx", "pdf", "txt", "rtf", "odt", "pages"));
-        categoryExtensions.put("videos", Arrays.asList("mp4", "avi", "mov", "mkv", "wmv", "flv", "webm"));
-        categoryExtensions.put("music", Arrays.asList("mp3", "wav", "flac", "aac", "ogg", "wma"));
-        categoryExtensions.put("archives", Arrays.asList("zip", "rar", "7z", "tar", "gz", "bz2"));
-        categoryExtensions.put("applications", Arrays.asList("exe", "msi", "apk", "jar", "dmg", "deb", "rpm"));
-
-        // Create category folders and move files
-        for (String category : categories) {
-            if (categoryExtensions.containsKey(category)) {
-                String categoryFolder = baseDirectory + File.separator + category;
-                File folder = new File(categoryFolder);
-                if (!folder.exists()) {
-                    folder.mkdirs();
-                }
+    @GetMapping("/scan/jobs/{id}")
+    public String scanJob(@PathVariable("id") String id, Principal principal, Model model) {
+        model.addAttribute("job", findJob(id, principal));
+        return "scan-job";
+    }
 
-                List<String> extensions = categoryExtensions.get(category);
-                for (ApplicationFile file : files) {
-                    String fileExtension = getFileExtension(file.getName()).toLowerCase();
-                    if (extensions.contains(fileExtension)) {
-                        try {
-                            File sourceFile = new File(file.getPath());
-                            File destFile = new File(categoryFolder + File.separator + file.getName());
-                            
-                            // Only move if file exists and destination doesn't exist
-                            if (sourceFile.exists() && !destFile.exists()) {
-                                java.nio.file.Files.move(sourceFile.toPath(), destFile.toPath());
-                                // Update the file path in our model
-                                file.setPath(destFile.getAbsolutePath());
-                            }
-                        } catch (Exception e) {
-                            // Log error but continue with other files
-                            System.err.println("Error moving file " + file.getName() + ": " + e.getMessage());
-                        }
-                    }
-                }
-            }
+    @GetMapping(value = "/scan/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter scanJobEvents(@PathVariable("id") String id, Principal principal) {
+        return scanJobService.subscribe(findJob(id, principal));
+    }
+
+    @PostMapping("/scan/jobs/{id}/cancel")
+    public String cancelScanJob(@PathVariable("id") String id, Principal principal) {
+        scanJobService.cancel(findJob(id, principal));
+        return "redirect:/scan/jobs/" + id;
+    }
+
+    @GetMapping("/scan/jobs/{id}/result")
+    public String scanJobResult(@PathVariable("id") String id, Principal principal, Model model) {
+        ScanJob job = findJob(id, principal);
+        if (job.getStatus() != ScanJob.Status.COMPLETED) {
+            return "redirect:/scan/jobs/" + id;
+        }
+        model.addAttribute("files", job.getFiles());
+        model.addAttribute("categorizationEnabled", job.getCategories() != null);
+        model.addAttribute("selectedCategories", job.getCategories());
+        return "scan-result";
+    }
+
+    private ScanJob findJob(String id, Principal principal) {
+        ScanJob job = scanJobService.getJob(id, principal.getName());
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Scan job not found");
         }
+        return job;
     }
 
-    private String getFileExtension(String fileName) {
-        int lastDot = fileName.lastIndexOf('.');
-        return (lastDot == -1) ? "" : fileName.substring(lastDot + 1);
+    @PostMapping("/unwatch")
+    public String unwatchDirectory(@RequestParam("directory") String directory) {
+        directoryWatchService.unwatch(directory);
+        return "redirect:/debug";
     }
 
     @GetMapping("/duplicates")
     public String showDuplicates(Model model) {
         try {
-            List<ApplicationFile> files = applicationFileRepository.findAll();
-            Map<String, List<ApplicationFile>> duplicates = duplicateDetectorService.findDuplicates(files);
-            if (duplicates == null) {
-                duplicates = new HashMap<>();
+            // Groups are computed when scans and watched directory updates commit
+            Map<String, List<ApplicationFile>> duplicates = new LinkedHashMap<>();
+            Map<String, DuplicateCluster> groupStats = new HashMap<>();
+            for (DuplicateCluster cluster : duplicateGroupService.getGroups()) {
+                duplicates.put(cluster.getKey(), cluster.getFiles());
+                groupStats.put(cluster.getKey(), cluster);
             }
             model.addAttribute("duplicates", duplicates);
+            model.addAttribute("groupStats", groupStats);
             return "duplicates";
         } catch (Exception e) {
             // Log the error for debugging
@@ -141,10 +152,33 @@ public class ApplicationManagerController {
             // Add error message to model
             model.addAttribute("error", "An error occurred while processing duplicates: " + e.getMessage());
             model.addAttribute("duplicates", new HashMap<>());
+            model.addAttribute("groupStats", new HashMap<>());
             return "duplicates";
         }
     }
 
+    // The catalog files most like one file, given by id or path, best first
+    @GetMapping(value = "/similar", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public List<SimilarFile> similarFiles(@RequestParam(value = "id", required = false) Long id,
+                                          @RequestParam(value = "path", required = false) String path,
+                                          @RequestParam(value = "k", defaultValue = "10") int k) {
+        Optional<ApplicationFile> file;
+        if (id != null) {
+            file = applicationFileRepository.findById(id);
+        } else if (path != null) {
+            file = applicationFileRepository.findByPathIn(List.of(path)).stream().findFirst();
+        } else {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A file id or path is required");
+        }
+        if (file.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found");
+        }
+        return duplicateGroupService.findSimilar(file.get(), Math.max(1, Math.min(k, 100)))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Duplicate groups are being updated, try again shortly"));
+    }
+
     @PostMapping("/remove")
     public String removeDuplicates(@RequestParam(value = "fileIds", required = false) List<Long> fileIds, org.springframework.web.servlet.mvc.support.RedirectAttributes redirectAttributes) {
         if (fileIds != null && !fileIds.isEmpty()) {
@@ -162,6 +196,7 @@ public class ApplicationManagerController {
                 }
             }
             applicationFileRepository.deleteAllById(fileIds);
+            duplicateGroupService.update(Collections.emptyList(), filesToDelete);
             redirectAttributes.addFlashAttribute("message", "Selected duplicates removed successfully.");
         } else {
             redirectAttributes.addFlashAttribute("message", "No files selected for removal.");
@@ -3,19 +3,38 @@ package com.example.appmanager.model;
 import jakarta.persistence.*;
 
 @Entity
+@Table(indexes = {@Index(columnList = "size"), @Index(columnList = "hashAlgorithm, hash")})
 public class ApplicationFile {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     private String name = "";
+    @Column(length = 4096, unique = true)
     private String path = "";
     private String hash = "";
+    private String hashAlgorithm = "sha256"; // "sha256", "xxhash64", "text-sha256" for normalized text, or "payload-sha256"/"flac-md5" for media without tags
+    private String confirmedHash = ""; // SHA-256 of the content, only when its fast hash collided with another file's
     private long size = 0L;
     private String fileType = "unknown"; // e.g., extension or MIME type
     private double entropy = 0.0; // Shannon entropy for file content
     private String ssdeepHash = "";
+    @Column(length = 512)
+    private byte[] minHash = new byte[0]; // MinHash signature of the word set, text files only
+    @Column(length = 32768)
+    private byte[] textProfile = new byte[0]; // leading word hashes and a sample of word counts, text files only
+    @Column(length = 32768)
+    private byte[] audioFingerprint = new byte[0]; // frame codes of decoded WAV/AIFF audio, audio files only
+    private long videoDuration = 0L; // milliseconds; this and the stream properties below from the container header, video files only
+    private int videoWidth = 0;
+    private int videoHeight = 0;
+    private String videoCodec = "";
+    private long videoFrames = 0L;
+    private Long imageHash; // perceptual hash of the decoded image, null unless an image file decoded
+    @Column(length = 196608)
+    private byte[] contentChunks = new byte[0]; // hash and length of each content-defined chunk, larger files only
     private double similarityScore = 0.0; // Percentage similarity (0-100)
+    private String scanMode = "full"; // "full", or "exact" when only files sharing a size were hashed
 
     @ManyToOne
     private Category category;
@@ -29,6 +48,10 @@ public class ApplicationFile {
     public void setPath(String path) { this.path = path != null ? path : ""; }
     public String getHash() { return hash != null ? hash : ""; }
     public void setHash(String hash) { this.hash = hash != null ? hash : ""; }
+    public String getHashAlgorithm() { return hashAlgorithm != null ? hashAlgorithm : "sha256"; }
+    public void setHashAlgorithm(String hashAlgorithm) { this.hashAlgorithm = hashAlgorithm != null ? hashAlgorithm : "sha256"; }
+    public String getConfirmedHash() { return confirmedHash != null ? confirmedHash : ""; }
+    public void setConfirmedHash(String confirmedHash) { this.confirmedHash = confirmedHash != null ? confirmedHash : ""; }
     public long getSize() { return size; }
     public void setSize(long size) { this.size = size; }
     public String getFileType() { return fileType != null ? fileType : "unknown"; }
@@ -37,8 +60,30 @@ public class ApplicationFile {
     public void setEntropy(double entropy) { this.entropy = entropy; }
     public String getSsdeepHash() { return ssdeepHash != null ? ssdeepHash : ""; }
     public void setSsdeepHash(String ssdeepHash) { this.ssdeepHash = ssdeepHash != null ? ssdeepHash : ""; }
+    public byte[] getMinHash() { return minHash != null ? minHash : new byte[0]; }
+    public void setMinHash(byte[] minHash) { this.minHash = minHash != null ? minHash : new byte[0]; }
+    public byte[] getTextProfile() { return textProfile != null ? textProfile : new byte[0]; }
+    public void setTextProfile(byte[] textProfile) { this.textProfile = textProfile != null ? textProfile : new byte[0]; }
+    public byte[] getAudioFingerprint() { return audioFingerprint != null ? audioFingerprint : new byte[0]; }
+    public void setAudioFingerprint(byte[] audioFingerprint) { this.audioFingerprint = audioFingerprint != null ? audioFingerprint : new byte[0]; }
+    public long getVideoDuration() { return videoDuration; }
+    public void setVideoDuration(long videoDuration) { this.videoDuration = videoDuration; }
+    public int getVideoWidth() { return videoWidth; }
+    public void setVideoWidth(int videoWidth) { this.videoWidth = videoWidth; }
+    public int getVideoHeight() { return videoHeight; }
+    public void setVideoHeight(int videoHeight) { this.videoHeight = videoHeight; }
+    public String getVideoCodec() { return videoCodec != null ? videoCodec : ""; }
+    public void setVideoCodec(String videoCodec) { this.videoCodec = videoCodec != null ? videoCodec : ""; }
+    public long getVideoFrames() { return videoFrames; }
+    public void setVideoFrames(long videoFrames) { this.videoFrames = videoFrames; }
+    public Long getImageHash() { return imageHash; }
+    public void setImageHash(Long imageHash) { this.imageHash = imageHash; }
+    public byte[] getContentChunks() { return contentChunks != null ? contentChunks : new byte[0]; }
+    public void setContentChunks(byte[] contentChunks) { this.contentChunks = contentChunks != null ? contentChunks : new byte[0]; }
     public double getSimilarityScore() { return similarityScore; }
     public void setSimilarityScore(double similarityScore) { this.similarityScore = similarityScore; }
+    public String getScanMode() { return scanMode != null ? scanMode : "full"; }
+    public void setScanMode(String scanMode) { this.scanMode = scanMode != null ? scanMode : "full"; }
     public Category getCategory() { return category; }
     public void setCategory(Category category) { this.category = category; }
 }
\ No newline at end of file
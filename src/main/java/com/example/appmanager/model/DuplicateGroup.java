@@ -0,0 +1,38 @@
+package com.example.appmanager.model;
+
+import jakarta.persistence.*;
+
+// A duplicate group as computed when the catalog last changed, so the duplicates page does not rerun detection
+@Entity
+public class DuplicateGroup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 4096)
+    private String groupKey = ""; // content hash for exact groups, "similar-" and the first path otherwise
+    private boolean exact = false;
+    private double minSimilarity = 0.0;
+    private double maxSimilarity = 0.0;
+    private double averageSimilarity = 0.0;
+    private long reclaimableBytes = 0L; // bytes deduplicating the group would free
+    private long computedAt = 0L;
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getGroupKey() { return groupKey != null ? groupKey : ""; }
+    public void setGroupKey(String groupKey) { this.groupKey = groupKey != null ? groupKey : ""; }
+    public boolean isExact() { return exact; }
+    public void setExact(boolean exact) { this.exact = exact; }
+    public double getMinSimilarity() { return minSimilarity; }
+    public void setMinSimilarity(double minSimilarity) { this.minSimilarity = minSimilarity; }
+    public double getMaxSimilarity() { return maxSimilarity; }
+    public void setMaxSimilarity(double maxSimilarity) { this.maxSimilarity = maxSimilarity; }
+    public double getAverageSimilarity() { return averageSimilarity; }
+    public void setAverageSimilarity(double averageSimilarity) { this.averageSimilarity = averageSimilarity; }
+    public long getReclaimableBytes() { return reclaimableBytes; }
+    public void setReclaimableBytes(long reclaimableBytes) { this.reclaimableBytes = reclaimableBytes; }
+    public long getComputedAt() { return computedAt; }
+    public void setComputedAt(long computedAt) { this.computedAt = computedAt; }
+}
@@ -0,0 +1,28 @@
+package com.example.appmanager.model;
+
+import jakarta.persistence.*;
+
+// One file of a duplicate group with the score it was grouped at. The file is referenced by id only, so catalog
+// rows can be removed without touching groups; members whose file is gone are skipped when groups are read.
+@Entity
+@Table(indexes = {@Index(columnList = "fileId")})
+public class DuplicateMembership {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    private DuplicateGroup duplicateGroup;
+    private Long fileId;
+    private double similarityScore = 0.0;
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public DuplicateGroup getDuplicateGroup() { return duplicateGroup; }
+    public void setDuplicateGroup(DuplicateGroup duplicateGroup) { this.duplicateGroup = duplicateGroup; }
+    public Long getFileId() { return fileId; }
+    public void setFileId(Long fileId) { this.fileId = fileId; }
+    public double getSimilarityScore() { return similarityScore; }
+    public void setSimilarityScore(double similarityScore) { this.similarityScore = similarityScore; }
+}
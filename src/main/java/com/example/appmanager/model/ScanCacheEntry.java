@@ -0,0 +1,133 @@
+package com.example.appmanager.model;
+
+import jakarta.persistence.*;
+
+import java.util.Collection;
+
+// Features computed for a file at a given (path, size, lastModified, fileKey), reused by later scans
+@Entity
+public class ScanCacheEntry {
+    // Bumped whenever the extractor starts storing another feature, so entries written before it are recomputed
+    // instead of restoring it empty: 1 hashes and entropy, 2 MinHash, 3 audio fingerprint, 4 video stream
+    // properties, 5 image hash, 6 content-defined chunks, 7 text profile
+    public static final int FEATURE_VERSION = 7;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 4096, unique = true)
+    private String path = "";
+    private long size = 0L;
+    private long lastModified = 0L;
+    private String fileKey = ""; // filesystem identity (e.g. device and inode), empty where unsupported
+
+    private String hash = "";
+    private String hashAlgorithm = "sha256";
+    private String confirmedHash = "";
+    private String ssdeepHash = "";
+    @Column(length = 512)
+    private byte[] minHash = new byte[0];
+    @Column(length = 32768)
+    private byte[] textProfile = new byte[0];
+    @Column(length = 32768)
+    private byte[] audioFingerprint = new byte[0];
+    private long videoDuration = 0L;
+    private int videoWidth = 0;
+    private int videoHeight = 0;
+    private String videoCodec = "";
+    private long videoFrames = 0L;
+    private Long imageHash;
+    @Column(length = 196608)
+    private byte[] contentChunks = new byte[0];
+    private double entropy = 0.0;
+    private int featureVersion = 0;
+
+    public boolean matches(long size, long lastModified, String fileKey, Collection<String> hashAlgorithms) {
+        return this.size == size && this.lastModified == lastModified && getFileKey().equals(fileKey)
+                && hashAlgorithms.contains(getHashAlgorithm()) && featureVersion == FEATURE_VERSION;
+    }
+
+    // Copies the cached features onto a freshly scanned file
+    public void applyTo(ApplicationFile appFile) {
+        appFile.setHash(hash);
+        appFile.setHashAlgorithm(hashAlgorithm);
+        appFile.setConfirmedHash(confirmedHash);
+        appFile.setSsdeepHash(ssdeepHash);
+        appFile.setMinHash(minHash);
+        appFile.setTextProfile(textProfile);
+        appFile.setAudioFingerprint(audioFingerprint);
+        appFile.setVideoDuration(videoDuration);
+        appFile.setVideoWidth(videoWidth);
+        appFile.setVideoHeight(videoHeight);
+        appFile.setVideoCodec(videoCodec);
+        appFile.setVideoFrames(videoFrames);
+        appFile.setImageHash(imageHash);
+        appFile.setContentChunks(contentChunks);
+        appFile.setEntropy(entropy);
+    }
+
+    // Captures the features of a file that has just been read
+    public void capture(ApplicationFile appFile) {
+        this.hash = appFile.getHash();
+        this.hashAlgorithm = appFile.getHashAlgorithm();
+        this.confirmedHash = appFile.getConfirmedHash();
+        this.ssdeepHash = appFile.getSsdeepHash();
+        this.minHash = appFile.getMinHash();
+        this.textProfile = appFile.getTextProfile();
+        this.audioFingerprint = appFile.getAudioFingerprint();
+        this.videoDuration = appFile.getVideoDuration();
+        this.videoWidth = appFile.getVideoWidth();
+        this.videoHeight = appFile.getVideoHeight();
+        this.videoCodec = appFile.getVideoCodec();
+        this.videoFrames = appFile.getVideoFrames();
+        this.imageHash = appFile.getImageHash();
+        this.contentChunks = appFile.getContentChunks();
+        this.featureVersion = FEATURE_VERSION;
+        this.entropy = appFile.getEntropy();
+    }
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getPath() { return path != null ? path : ""; }
+    public void setPath(String path) { this.path = path != null ? path : ""; }
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+    public long getLastModified() { return lastModified; }
+    public void setLastModified(long lastModified) { this.lastModified = lastModified; }
+    public String getFileKey() { return fileKey != null ? fileKey : ""; }
+    public void setFileKey(String fileKey) { this.fileKey = fileKey != null ? fileKey : ""; }
+    public String getHash() { return hash != null ? hash : ""; }
+    public void setHash(String hash) { this.hash = hash != null ? hash : ""; }
+    public String getHashAlgorithm() { return hashAlgorithm != null ? hashAlgorithm : "sha256"; }
+    public void setHashAlgorithm(String hashAlgorithm) { this.hashAlgorithm = hashAlgorithm != null ? hashAlgorithm : "sha256"; }
+    public String getConfirmedHash() { return confirmedHash != null ? confirmedHash : ""; }
+    public void setConfirmedHash(String confirmedHash) { this.confirmedHash = confirmedHash != null ? confirmedHash : ""; }
+    public String getSsdeepHash() { return ssdeepHash != null ? ssdeepHash : ""; }
+    public void setSsdeepHash(String ssdeepHash) { this.ssdeepHash = ssdeepHash != null ? ssdeepHash : ""; }
+    public byte[] getMinHash() { return minHash != null ? minHash : new byte[0]; }
+    public void setMinHash(byte[] minHash) { this.minHash = minHash != null ? minHash : new byte[0]; }
+    public byte[] getTextProfile() { return textProfile != null ? textProfile : new byte[0]; }
+    public void setTextProfile(byte[] textProfile) { this.textProfile = textProfile != null ? textProfile : new byte[0]; }
+    public byte[] getAudioFingerprint() { return audioFingerprint != null ? audioFingerprint : new byte[0]; }
+    public void setAudioFingerprint(byte[] audioFingerprint) { this.audioFingerprint = audioFingerprint != null ? audioFingerprint : new byte[0]; }
+    public long getVideoDuration() { return videoDuration; }
+    public void setVideoDuration(long videoDuration) { this.videoDuration = videoDuration; }
+    public int getVideoWidth() { return videoWidth; }
+    public void setVideoWidth(int videoWidth) { this.videoWidth = videoWidth; }
+    public int getVideoHeight() { return videoHeight; }
+    public void setVideoHeight(int videoHeight) { this.videoHeight = videoHeight; }
+    public String getVideoCodec() { return videoCodec != null ? videoCodec : ""; }
+    public void setVideoCodec(String videoCodec) { this.videoCodec = videoCodec != null ? videoCodec : ""; }
+    public long getVideoFrames() { return videoFrames; }
+    public void setVideoFrames(long videoFrames) { this.videoFrames = videoFrames; }
+    public Long getImageHash() { return imageHash; }
+    public void setImageHash(Long imageHash) { this.imageHash = imageHash; }
+    public byte[] getContentChunks() { return contentChunks != null ? contentChunks : new byte[0]; }
+    public void setContentChunks(byte[] contentChunks) { this.contentChunks = contentChunks != null ? contentChunks : new byte[0]; }
+    public int getFeatureVersion() { return featureVersion; }
+    public void setFeatureVersion(int featureVersion) { this.featureVersion = featureVersion; }
+    public double getEntropy() { return entropy; }
+    public void setEntropy(double entropy) { this.entropy = entropy; }
+}
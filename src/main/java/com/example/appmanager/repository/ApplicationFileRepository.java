@@ -2,8 +2,14 @@ package com.example.appmanager.repository;
 
 import com.example.appmanager.model.ApplicationFile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Collection;
 import java.util.List;
 
 public interface ApplicationFileRepository extends JpaRepository<ApplicationFile, Long> {
     List<ApplicationFile> findByHash(String hash);
-}
\ No newline at end of file
+    List<ApplicationFile> findByHashAlgorithmAndHashIn(String hashAlgorithm, Collection<String> hashes);
+    List<ApplicationFile> findByPathIn(Collection<String> paths);
+    List<ApplicationFile> findByPathStartingWith(String prefix);
+    List<ApplicationFile> findBySizeIn(Collection<Long> sizes);
+    List<ApplicationFile> findByScanModeAndSizeIn(String scanMode, Collection<Long> sizes);
+}
@@ -0,0 +1,11 @@
+package com.example.appmanager.repository;
+
+import com.example.appmanager.model.DuplicateGroup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Collection;
+import java.util.List;
+
+public interface DuplicateGroupRepository extends JpaRepository<DuplicateGroup, Long> {
+    List<DuplicateGroup> findAllByOrderByIdAsc();
+    List<DuplicateGroup> findByGroupKeyIn(Collection<String> groupKeys);
+}
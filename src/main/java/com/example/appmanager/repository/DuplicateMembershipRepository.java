@@ -0,0 +1,18 @@
+package com.example.appmanager.repository;
+
+import com.example.appmanager.model.DuplicateGroup;
+import com.example.appmanager.model.DuplicateMembership;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
+import java.util.List;
+
+public interface DuplicateMembershipRepository extends JpaRepository<DuplicateMembership, Long> {
+    List<DuplicateMembership> findAllByOrderByIdAsc();
+
+    @Modifying
+    @Query("delete from DuplicateMembership m where m.duplicateGroup in :groups")
+    int deleteByDuplicateGroupIn(@Param("groups") Collection<DuplicateGroup> groups);
+}
@@ -0,0 +1,11 @@
+package com.example.appmanager.repository;
+
+import com.example.appmanager.model.ScanCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.Collection;
+import java.util.List;
+
+public interface ScanCacheRepository extends JpaRepository<ScanCacheEntry, Long> {
+    List<ScanCacheEntry> findByPathStartingWith(String prefix);
+    List<ScanCacheEntry> findByPathIn(Collection<String> paths);
+}
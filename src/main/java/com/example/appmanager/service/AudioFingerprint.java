@@ -0,0 +1,281 @@
+package com.example.appmanager.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Spectral fingerprint of a piece of audio. The decoded samples are resampled to 11025 Hz and cut into overlapping
+// frames; each frame's spectrum is split into 33 logarithmic bands between 300 and 2000 Hz, and its code says, for
+// each of the 32 pairs of neighbouring bands, whether the difference between their energies grew, shrank or held
+// since the previous frame. Only the directions of changes count, so the codes survive re-encoding and changes of
+// volume or sample rate, and two recordings of the same audio agree on most changes at some time offset.
+// The fingerprint is the frame codes in order, each the mask of pairs that changed above the pairs that grew.
+final class AudioFingerprint implements PcmDecoder.SampleSink {
+    static final int SAMPLE_RATE = 11025;
+    private static final int FRAME = 2048;
+    private static final int HOP = 512;
+    private static final int BANDS = 33;
+    private static final double LOWEST_FREQUENCY = 300;
+    private static final double HIGHEST_FREQUENCY = 2000;
+    // Only the opening minutes are fingerprinted, which bounds both the work per file and the stored size
+    static final int MAX_FRAMES = 120 * SAMPLE_RATE / HOP;
+    // Fewer codes than this, about a second of audio, say too little to match on
+    private static final int MIN_FRAMES = SAMPLE_RATE / HOP;
+    // Added to every bin's energy, far below any audible content, so bands holding nothing but rounding noise
+    // compare equal instead of at random
+    private static final double ENERGY_FLOOR = 1e-2;
+    // Smaller changes of a log energy difference, a fraction of a decibel, count as holding
+    private static final double MIN_CHANGE = 0.1;
+    // Codes with fewer changes than this are too common to align or index files by
+    private static final int MIN_CHANGES = 4;
+    // Index keys per fingerprint: the distinct codes that come first in a fixed random order
+    static final int PROBES = 24;
+    // Codes repeated more often than this say nothing about where two files align
+    private static final int MAX_REPEATS = 32;
+
+    private static final float[] WINDOW = new float[FRAME];
+    private static final double[] COS = new double[FRAME / 2];
+    private static final double[] SIN = new double[FRAME / 2];
+    private static final int[] BAND_EDGES = new int[BANDS + 1];
+
+    static {
+        for (int i = 0; i < FRAME; i++) {
+            WINDOW[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / FRAME));
+        }
+        for (int i = 0; i < FRAME / 2; i++) {
+            COS[i] = Math.cos(2 * Math.PI * i / FRAME);
+            SIN[i] = -Math.sin(2 * Math.PI * i / FRAME);
+        }
+        for (int band = 0; band <= BANDS; band++) {
+            double frequency = LOWEST_FREQUENCY * Math.pow(HIGHEST_FREQUENCY / LOWEST_FREQUENCY, (double) band / BANDS);
+            BAND_EDGES[band] = (int) Math.round(frequency * FRAME / SAMPLE_RATE);
+        }
+    }
+
+    private final PcmDecoder decoder = new PcmDecoder(this);
+
+    // Resampling: input samples are averaged over each output period
+    private double step = 0;
+    private double position = 0;
+    private double nextOutput = 0;
+    private float sum = 0;
+    private int count = 0;
+    private float last = 0;
+
+    // Framing: the last FRAME output samples, and how many arrived since the last frame
+    private final float[] samples = new float[FRAME];
+    private long written = 0;
+    private int sinceFrame = 0;
+    private final double[] real = new double[FRAME];
+    private final double[] imaginary = new double[FRAME];
+
+    // Band energy differences of the previous and current frame, and the codes so far
+    private double[] previous;
+    private double[] current = new double[BANDS - 1];
+    private long[] codes = new long[256];
+    private int frames = 0;
+
+    void update(byte[] buffer, int offset, int length) {
+        if (frames < MAX_FRAMES) decoder.update(buffer, offset, length);
+    }
+
+    @Override
+    public boolean accept(float sample) {
+        if (step == 0) step = decoder.getSampleRate() / SAMPLE_RATE;
+        sum += sample;
+        count++;
+        position += 1;
+        while (position >= nextOutput) {
+            if (count > 0) {
+                last = sum / count;
+                sum = 0;
+                count = 0;
+            }
+            nextOutput += step;
+            addSample(last);
+        }
+        return frames < MAX_FRAMES;
+    }
+
+    // The fingerprint of everything decoded, or an empty one when the file was not decodable audio
+    byte[] digest() {
+        if (frames < MIN_FRAMES) return new byte[0];
+        ByteBuffer bytes = ByteBuffer.allocate(frames * 8);
+        for (int i = 0; i < frames; i++) {
+            bytes.putLong(codes[i]);
+        }
+        return bytes.array();
+    }
+
+    // Share of the changes in either fingerprint that the other makes too, where the two overlap at the time offset
+    // most of their identical codes agree on, from 0 to 100. -1 unless both fingerprints are present and change
+    // enough to tell, which steady tones or silence do not.
+    static double similarity(byte[] a, byte[] b) {
+        if (a.length == 0 || b.length == 0) return -1;
+        long[] codesA = codes(a);
+        long[] codesB = codes(b);
+        int offset = alignment(codesA, codesB);
+        long changes = 0;
+        long shared = 0;
+        for (int i = Math.max(0, -offset); i < Math.min(codesA.length, codesB.length - offset); i++) {
+            long codeA = codesA[i];
+            long codeB = codesB[i + offset];
+            // Changed in both, and the same way
+            long both = (codeA & codeB) >>> 32 & ~(codeA ^ codeB);
+            changes += Long.bitCount((codeA | codeB) >>> 32);
+            shared += Long.bitCount(both);
+        }
+        if (changes < 32) return -1;
+        return 100.0 * shared / changes;
+    }
+
+    // Index keys of a fingerprint; fingerprints agreeing on many codes very likely share some of these
+    static long[] probeKeys(byte[] fingerprint) {
+        long[] codes = codes(fingerprint);
+        long[] keys = new long[codes.length];
+        int size = 0;
+        for (long code : codes) {
+            if (Long.bitCount(code >>> 32) >= MIN_CHANGES) keys[size++] = MinHash.mix(code);
+        }
+        keys = Arrays.copyOf(keys, size);
+        Arrays.sort(keys);
+        int distinct = 0;
+        for (int i = 0; i < keys.length && distinct < PROBES; i++) {
+            if (distinct == 0 || keys[i] != keys[distinct - 1]) keys[distinct++] = keys[i];
+        }
+        return Arrays.copyOf(keys, distinct);
+    }
+
+    private static long[] codes(byte[] fingerprint) {
+        long[] codes = new long[fingerprint.length / 8];
+        ByteBuffer.wrap(fingerprint).asLongBuffer().get(codes);
+        return codes;
+    }
+
+    // How far into b the start of a lines up, by a vote of identical codes; 0 when there are none to go by
+    private static int alignment(long[] a, long[] b) {
+        // Frames of a ordered by code
+        Integer[] order = new Integer[a.length];
+        for (int i = 0; i < a.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> Long.compare(a[x], a[y]));
+        long[] byCode = new long[a.length];
+        for (int k = 0; k < a.length; k++) {
+            byCode[k] = a[order[k]];
+        }
+        int[] votes = new int[a.length + b.length];
+        for (int j = 0; j < b.length; j++) {
+            if (Long.bitCount(b[j] >>> 32) < MIN_CHANGES) continue;
+            int first = firstWithCode(byCode, b[j]);
+            int end = first;
+            while (end < byCode.length && byCode[end] == b[j]) end++;
+            if (end - first > MAX_REPEATS) continue;
+            for (int k = first; k < end; k++) {
+                votes[j - order[k] + a.length]++;
+            }
+        }
+        int best = a.length;
+        for (int k = 0; k < votes.length; k++) {
+            // Ties go to the smaller shift
+            if (votes[k] > votes[best] || votes[k] == votes[best] && Math.abs(k - a.length) < Math.abs(best - a.length)) {
+                best = k;
+            }
+        }
+        return best - a.length;
+    }
+
+    private static int firstWithCode(long[] byCode, long key) {
+        int low = 0;
+        int high = byCode.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (byCode[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private void addSample(float sample) {
+        samples[(int) (written++ % FRAME)] = sample;
+        if (++sinceFrame < HOP || written < FRAME || frames >= MAX_FRAMES) return;
+        sinceFrame = 0;
+        bandDifferences(current);
+        if (previous == null) {
+            previous = current;
+            current = new double[BANDS - 1];
+            return;
+        }
+        long changed = 0;
+        long grew = 0;
+        for (int band = 0; band < BANDS - 1; band++) {
+            double change = current[band] - previous[band];
+            changed = changed << 1 | (Math.abs(change) >= MIN_CHANGE ? 1 : 0);
+            grew = grew << 1 | (change >= MIN_CHANGE ? 1 : 0);
+        }
+        long code = changed << 32 | grew;
+        if (frames == codes.length) codes = Arrays.copyOf(codes, frames * 2);
+        codes[frames++] = code;
+        double[] swap = previous;
+        previous = current;
+        current = swap;
+    }
+
+    // Differences between the log energies of neighbouring bands, for the windowed frame ending at the latest sample
+    private void bandDifferences(double[] differences) {
+        int start = (int) (written % FRAME);
+        for (int i = 0; i < FRAME; i++) {
+            real[i] = samples[(start + i) % FRAME] * WINDOW[i];
+            imaginary[i] = 0;
+        }
+        fft(real, imaginary);
+        double below = 0;
+        for (int band = 0; band < BANDS; band++) {
+            double energy = 0;
+            for (int bin = BAND_EDGES[band]; bin < BAND_EDGES[band + 1]; bin++) {
+                energy += real[bin] * real[bin] + imaginary[bin] * imaginary[bin] + ENERGY_FLOOR;
+            }
+            double level = Math.log(energy);
+            if (band > 0) differences[band - 1] = below - level;
+            below = level;
+        }
+    }
+
+    // In-place iterative radix-2 FFT
+    private static void fft(double[] re, double[] im) {
+        int n = re.length;
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double swap = re[i];
+                re[i] = re[j];
+                re[j] = swap;
+                swap = im[i];
+                im[i] = im[j];
+                im[j] = swap;
+            }
+        }
+        for (int length = 2; length <= n; length <<= 1) {
+            int half = length >> 1;
+            int stride = n / length;
+            for (int i = 0; i < n; i += length) {
+                for (int k = 0; k < half; k++) {
+                    double cos = COS[k * stride];
+                    double sin = SIN[k * stride];
+                    double oddRe = re[i + k + half] * cos - im[i + k + half] * sin;
+                    double oddIm = re[i + k + half] * sin + im[i + k + half] * cos;
+                    re[i + k + half] = re[i + k] - oddRe;
+                    im[i + k + half] = im[i + k] - oddIm;
+                    re[i + k] += oddRe;
+                    im[i + k] += oddIm;
+                }
+            }
+        }
+    }
+}
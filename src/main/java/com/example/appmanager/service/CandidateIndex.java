@@ -0,0 +1,389 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Blocks out pairs of files that cannot plausibly be near-duplicates, so similarity is only scored on candidate
+// pairs. Files are bucketed by type family, half-octave size band and half-bit entropy band; the candidates of a
+// file are the files in its own and the neighbouring buckets of the same family. Text files with a MinHash signature
+// are bucketed by its LSH bands instead, and their candidates are the files sharing any one band. Audio files with a
+// fingerprint are also filed under its probe keys, an inverted index from landmark hash to file, so recordings of the
+// same audio find each other whatever their size and encoding. Videos whose container header gave a duration are
+// also filed by that duration to the second, and find the videos within a second of it, so the same video in another
+// container or encoding is a candidate however much the sizes differ. Images with a perceptual hash are filed under
+// each quarter of it, and find the images whose hash has a quarter within one bit of theirs: every hash within seven
+// bits, which covers every pair the hashes can score as similar, whatever their size, format or entropy. Files with
+// a content-defined chunk list are filed under its smallest chunk hashes, a bottom-k sample of it, so files sharing
+// much of their content find each other across families and however an insertion shifted it.
+// Each file occupies a slot; files can be added and removed at any time and freed slots are reused.
+final class CandidateIndex {
+    private static final int TEXT = 0;
+    private static final int AUDIO = 1;
+    private static final int VIDEO = 2;
+    private static final int BINARY = 3;
+    private static final double ENTROPY_BAND_WIDTH = 0.5;
+    private static final int NO_DURATION = -1;
+
+    private ApplicationFile[] files = new ApplicationFile[16];
+    private int[] family = new int[16];
+    private int[] sizeBand = new int[16];
+    private int[] entropyBand = new int[16];
+    private long[] sizes = new long[16];
+    private double[] entropies = new double[16];
+    private byte[][] signatures = new byte[16][];
+    private long[][] probes = new long[16][];
+    private int[] durationBand = new int[16];
+    private long[] imageHash = new long[16];
+    private boolean[] hashedImage = new boolean[16];
+    private long[][] chunkProbes = new long[16][];
+    private int slots = 0;
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<Long, Bucket> buckets = new HashMap<>();
+    private final Map<Long, Bucket> bandBuckets = new HashMap<>();
+    private final Map<Long, Bucket> fingerprintBuckets = new HashMap<>();
+    private final Map<Long, Bucket> durationBuckets = new HashMap<>();
+    private final Map<Long, Bucket> imageBuckets = new HashMap<>();
+    private final Map<Long, Bucket> chunkBuckets = new HashMap<>();
+
+    CandidateIndex() {
+    }
+
+    // Slots follow the order of the list
+    CandidateIndex(List<ApplicationFile> files) {
+        for (ApplicationFile file : files) {
+            add(file);
+        }
+    }
+
+    int add(ApplicationFile file) {
+        int slot;
+        if (!freeSlots.isEmpty()) {
+            slot = freeSlots.pop();
+        } else {
+            slot = slots++;
+            if (slot == files.length) grow();
+        }
+        Keys keys = keysOf(file);
+        files[slot] = file;
+        family[slot] = keys.family;
+        sizeBand[slot] = keys.sizeBand;
+        entropyBand[slot] = keys.entropyBand;
+        sizes[slot] = file.getSize();
+        entropies[slot] = file.getEntropy();
+        signatures[slot] = keys.signature;
+        probes[slot] = keys.probes;
+        durationBand[slot] = keys.durationBand;
+        chunkProbes[slot] = keys.chunkProbes;
+        hashedImage[slot] = keys.hashedImage;
+        imageHash[slot] = keys.imageHash;
+        if (keys.durationBand != NO_DURATION) {
+            durationBuckets.computeIfAbsent((long) keys.durationBand, k -> new Bucket()).add(slot);
+        }
+        if (keys.chunkProbes != null) {
+            for (long probe : keys.chunkProbes) {
+                chunkBuckets.computeIfAbsent(probe, k -> new Bucket()).add(slot);
+            }
+        }
+        if (keys.hashedImage) {
+            for (int i = 0; i < ImageHash.CHUNKS; i++) {
+                imageBuckets.computeIfAbsent(imageKey(i, ImageHash.chunk(keys.imageHash, i)), k -> new Bucket()).add(slot);
+            }
+        }
+        if (keys.probes != null) {
+            for (long probe : keys.probes) {
+                fingerprintBuckets.computeIfAbsent(probe, k -> new Bucket()).add(slot);
+            }
+        }
+        if (keys.signature != null) {
+            for (int band = 0; band < MinHash.BANDS; band++) {
+                bandBuckets.computeIfAbsent(MinHash.bandKey(keys.signature, band), k -> new Bucket()).add(slot);
+            }
+        } else {
+            buckets.computeIfAbsent(key(keys.family, keys.sizeBand, keys.entropyBand), k -> new Bucket()).add(slot);
+        }
+        return slot;
+    }
+
+    void remove(int slot) {
+        if (chunkProbes[slot] != null) {
+            for (long probe : chunkProbes[slot]) {
+                removeFrom(chunkBuckets, probe, slot);
+            }
+            chunkProbes[slot] = null;
+        }
+        if (hashedImage[slot]) {
+            for (int i = 0; i < ImageHash.CHUNKS; i++) {
+                removeFrom(imageBuckets, imageKey(i, ImageHash.chunk(imageHash[slot], i)), slot);
+            }
+            hashedImage[slot] = false;
+        }
+        if (durationBand[slot] != NO_DURATION) {
+            removeFrom(durationBuckets, durationBand[slot], slot);
+        }
+        if (probes[slot] != null) {
+            for (long probe : probes[slot]) {
+                removeFrom(fingerprintBuckets, probe, slot);
+            }
+        }
+        if (signatures[slot] != null) {
+            for (int band = 0; band < MinHash.BANDS; band++) {
+                removeFrom(bandBuckets, MinHash.bandKey(signatures[slot], band), slot);
+            }
+        } else {
+            removeFrom(buckets, key(family[slot], sizeBand[slot], entropyBand[slot]), slot);
+        }
+        files[slot] = null;
+        signatures[slot] = null;
+        probes[slot] = null;
+        freeSlots.push(slot);
+    }
+
+    // Files currently indexed
+    int size() {
+        return slots - freeSlots.size();
+    }
+
+    ApplicationFile fileAt(int slot) {
+        return files[slot];
+    }
+
+    // Slots after this one that share a bucket with it, in ascending order
+    int[] candidatesAfter(int slot) {
+        return candidates(keysAt(slot), slot + 1);
+    }
+
+    // The slots a file that is not indexed would share a bucket with, in ascending order; nothing in the index changes,
+    // so lookups can run alongside each other
+    int[] candidatesFor(ApplicationFile file) {
+        return candidates(keysOf(file), 0);
+    }
+
+    // Every other slot sharing a bucket with this one, in ascending order
+    int[] candidatesOf(int slot) {
+        int[] candidates = candidates(keysAt(slot), 0);
+        int at = Arrays.binarySearch(candidates, slot);
+        if (at < 0) return candidates;
+        int[] others = new int[candidates.length - 1];
+        System.arraycopy(candidates, 0, others, 0, at);
+        System.arraycopy(candidates, at + 1, others, at, others.length - at);
+        return others;
+    }
+
+    // Compares the size and entropy of a file with those of the given slots, reading the index's columns rather than
+    // the files
+    void compare(int slot, int[] others, PairFeatures features) {
+        features.ensureCapacity(others.length);
+        for (int k = 0; k < others.length; k++) {
+            features.otherSizes[k] = sizes[others[k]];
+            features.otherEntropies[k] = entropies[others[k]];
+        }
+        features.compute(sizes[slot], entropies[slot], others.length);
+    }
+
+    // The same for a file that is not indexed
+    void compare(ApplicationFile file, int[] others, PairFeatures features) {
+        features.ensureCapacity(others.length);
+        for (int k = 0; k < others.length; k++) {
+            features.otherSizes[k] = sizes[others[k]];
+            features.otherEntropies[k] = entropies[others[k]];
+        }
+        features.compute(file.getSize(), file.getEntropy(), others.length);
+    }
+
+    private int[] candidates(Keys keys, int fromSlot) {
+        Collector collector = new Collector(fromSlot);
+        if (keys.signature != null) {
+            for (int band = 0; band < MinHash.BANDS; band++) {
+                collector.add(bandBuckets.get(MinHash.bandKey(keys.signature, band)));
+            }
+            // Files agreeing on several bands show up once per band
+            return collector.sortedUnique();
+        }
+        int sizeReach = keys.family == AUDIO || keys.family == VIDEO ? 2 : 1;
+        for (int s = keys.sizeBand - sizeReach; s <= keys.sizeBand + sizeReach; s++) {
+            for (int e = keys.entropyBand - 1; e <= keys.entropyBand + 1; e++) {
+                collector.add(buckets.get(key(keys.family, s, e)));
+            }
+        }
+        if (keys.probes != null) {
+            for (long probe : keys.probes) {
+                collector.add(fingerprintBuckets.get(probe));
+            }
+        }
+        if (keys.durationBand != NO_DURATION) {
+            for (long d = keys.durationBand - 1L; d <= keys.durationBand + 1L; d++) {
+                collector.add(durationBuckets.get(d));
+            }
+        }
+        if (keys.chunkProbes != null) {
+            for (long probe : keys.chunkProbes) {
+                collector.add(chunkBuckets.get(probe));
+            }
+        }
+        if (keys.hashedImage) {
+            for (int i = 0; i < ImageHash.CHUNKS; i++) {
+                long chunk = ImageHash.chunk(keys.imageHash, i);
+                collector.add(imageBuckets.get(imageKey(i, chunk)));
+                for (int bit = 0; bit < ImageHash.CHUNK_BITS; bit++) {
+                    collector.add(imageBuckets.get(imageKey(i, chunk ^ 1L << bit)));
+                }
+            }
+        }
+        return collector.sortedUnique();
+    }
+
+    // The bucket keys of a file, from its features or from the columns of its slot
+    private static final class Keys {
+        int family;
+        int sizeBand;
+        int entropyBand;
+        byte[] signature;
+        long[] probes;
+        int durationBand = NO_DURATION;
+        long[] chunkProbes;
+        boolean hashedImage;
+        long imageHash;
+    }
+
+    private static Keys keysOf(ApplicationFile file) {
+        Keys keys = new Keys();
+        keys.family = familyOf(file.getFileType());
+        keys.sizeBand = sizeBandOf(file.getSize());
+        keys.entropyBand = entropyBandOf(file.getEntropy());
+        if (keys.family == VIDEO && file.getVideoDuration() > 0) {
+            keys.durationBand = (int) Math.min(Integer.MAX_VALUE, file.getVideoDuration() / 1000);
+        }
+        if (file.getContentChunks().length > 0) {
+            keys.chunkProbes = ContentChunks.probeKeys(file.getContentChunks());
+        }
+        keys.hashedImage = file.getImageHash() != null;
+        if (keys.hashedImage) keys.imageHash = file.getImageHash();
+        if (keys.family == AUDIO && file.getAudioFingerprint().length > 0) {
+            keys.probes = AudioFingerprint.probeKeys(file.getAudioFingerprint());
+        }
+        if (keys.family == TEXT && file.getMinHash().length > 0) {
+            keys.signature = file.getMinHash();
+        }
+        return keys;
+    }
+
+    private Keys keysAt(int slot) {
+        Keys keys = new Keys();
+        keys.family = family[slot];
+        keys.sizeBand = sizeBand[slot];
+        keys.entropyBand = entropyBand[slot];
+        keys.signature = signatures[slot];
+        keys.probes = probes[slot];
+        keys.durationBand = durationBand[slot];
+        keys.chunkProbes = chunkProbes[slot];
+        keys.hashedImage = hashedImage[slot];
+        keys.imageHash = imageHash[slot];
+        return keys;
+    }
+
+    private void grow() {
+        int capacity = files.length * 2;
+        files = Arrays.copyOf(files, capacity);
+        family = Arrays.copyOf(family, capacity);
+        sizeBand = Arrays.copyOf(sizeBand, capacity);
+        entropyBand = Arrays.copyOf(entropyBand, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        entropies = Arrays.copyOf(entropies, capacity);
+        signatures = Arrays.copyOf(signatures, capacity);
+        probes = Arrays.copyOf(probes, capacity);
+        durationBand = Arrays.copyOf(durationBand, capacity);
+        imageHash = Arrays.copyOf(imageHash, capacity);
+        hashedImage = Arrays.copyOf(hashedImage, capacity);
+        chunkProbes = Arrays.copyOf(chunkProbes, capacity);
+    }
+
+    private static void removeFrom(Map<Long, Bucket> buckets, long key, int slot) {
+        Bucket bucket = buckets.get(key);
+        if (bucket != null && bucket.remove(slot) && bucket.size == 0) {
+            buckets.remove(key);
+        }
+    }
+
+    // Similarity scoring never matches files across these families
+    private static int familyOf(String fileType) {
+        if ("txt".equals(fileType)) return TEXT;
+        if (DuplicateDetectorService.isAudioFile(fileType)) return AUDIO;
+        if (DuplicateDetectorService.isVideoFile(fileType)) return VIDEO;
+        return BINARY;
+    }
+
+    // Two bands per doubling of size; empty files share band 0
+    private static int sizeBandOf(long size) {
+        if (size <= 1) return 0;
+        return (int) Math.floor(2 * Math.log(size) / Math.log(2));
+    }
+
+    private static int entropyBandOf(double entropy) {
+        if (!(entropy > 0)) return 0;
+        return (int) Math.floor(entropy / ENTROPY_BAND_WIDTH);
+    }
+
+    private static long key(int family, int sizeBand, int entropyBand) {
+        return ((long) family << 48) | ((long) (sizeBand & 0xFFFFFF) << 24) | (entropyBand & 0xFFFFFF);
+    }
+
+    private static long imageKey(int chunkIndex, long chunk) {
+        return (long) chunkIndex << ImageHash.CHUNK_BITS | chunk;
+    }
+
+    // Unordered slots of one bucket
+    private static final class Bucket {
+        private int[] slots = new int[4];
+        private int size = 0;
+
+        void add(int slot) {
+            if (size == slots.length) slots = Arrays.copyOf(slots, size * 2);
+            slots[size++] = slot;
+        }
+
+        boolean remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class Collector {
+        private final int fromSlot;
+        private int[] slots = new int[16];
+        private int size = 0;
+
+        Collector(int fromSlot) {
+            this.fromSlot = fromSlot;
+        }
+
+        void add(Bucket bucket) {
+            if (bucket == null) return;
+            if (size + bucket.size > slots.length) {
+                slots = Arrays.copyOf(slots, Math.max(slots.length * 2, size + bucket.size));
+            }
+            for (int i = 0; i < bucket.size; i++) {
+                if (bucket.slots[i] >= fromSlot) slots[size++] = bucket.slots[i];
+            }
+        }
+
+        int[] sortedUnique() {
+            Arrays.sort(slots, 0, size);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || slots[i] != slots[unique - 1]) slots[unique++] = slots[i];
+            }
+            return Arrays.copyOf(slots, unique);
+        }
+    }
+}
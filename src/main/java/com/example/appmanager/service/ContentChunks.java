@@ -0,0 +1,147 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Content-defined chunks of a file (FastCDC): a gear hash rolls over the bytes, and a chunk ends where its top bits
+// are all zero, so cut points follow the content rather than offsets. An insertion or deletion only changes the
+// chunks around it, and files that share most of their bytes at shifted offsets still share most of their chunks.
+// Cut points are harder to hit below the average chunk size and easier above it, which keeps chunk sizes close to
+// the average. The chunk list is each chunk's XXH64 and length in file order, for files large enough to be worth it.
+final class ContentChunks {
+    static final long MIN_FILE_SIZE = 256 * 1024;
+    private static final int MIN_SIZE = 16 * 1024;
+    private static final int AVERAGE_SIZE = 64 * 1024;
+    private static final int MAX_SIZE = 256 * 1024;
+    // 18 and 14 top bits: two more and two fewer than the 16 an average-sized chunk would take
+    private static final long MASK_SMALL = -1L << (64 - 18);
+    private static final long MASK_LARGE = -1L << (64 - 14);
+    // Only the chunks of about the first gigabyte are listed, which bounds the stored size
+    static final int MAX_CHUNKS = 16384;
+    private static final int ENTRY = 12;
+    // Index keys per chunk list: its smallest distinct chunk hashes
+    static final int PROBES = 32;
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = MinHash.mix(i + 1);
+        }
+    }
+
+    private final ByteBuffer chunks = ByteBuffer.allocate(MAX_CHUNKS * ENTRY);
+    private XxHash64 hash = new XxHash64();
+    private long fingerprint = 0;
+    private int chunkLength = 0;
+    private long total = 0;
+
+    void update(byte[] buffer, int offset, int length) {
+        total += length;
+        int end = offset + length;
+        while (offset < end && chunks.hasRemaining()) {
+            int start = offset;
+            // Nothing below the minimum size can be a cut point, so those bytes are not rolled
+            if (chunkLength < MIN_SIZE) {
+                int skip = Math.min(MIN_SIZE - chunkLength, end - offset);
+                offset += skip;
+                chunkLength += skip;
+            }
+            boolean cut = false;
+            while (offset < end && chunkLength >= MIN_SIZE) {
+                fingerprint = (fingerprint << 1) + GEAR[buffer[offset++] & 0xFF];
+                chunkLength++;
+                long mask = chunkLength < AVERAGE_SIZE ? MASK_SMALL : MASK_LARGE;
+                if ((fingerprint & mask) == 0 || chunkLength == MAX_SIZE) {
+                    cut = true;
+                    break;
+                }
+            }
+            hash.update(buffer, start, offset - start);
+            if (cut) endChunk();
+        }
+    }
+
+    // The chunk list, or an empty one for files below the minimum size
+    byte[] digest() {
+        if (total < MIN_FILE_SIZE) return new byte[0];
+        if (chunkLength > 0 && chunks.hasRemaining()) endChunk();
+        return Arrays.copyOf(chunks.array(), chunks.position());
+    }
+
+    private void endChunk() {
+        chunks.putLong(hash.digest());
+        chunks.putInt(chunkLength);
+        hash = new XxHash64();
+        fingerprint = 0;
+        chunkLength = 0;
+    }
+
+    // Share of the bytes of the larger file, counting each distinct chunk once, that the other file has too, from
+    // 0 to 100; -1 unless both files have a chunk list
+    static double overlap(byte[] a, byte[] b) {
+        if (a.length == 0 || b.length == 0) return -1;
+        Map<Long, Integer> chunksA = distinct(a);
+        Map<Long, Integer> chunksB = distinct(b);
+        Map<Long, Integer> fewer = chunksA.size() <= chunksB.size() ? chunksA : chunksB;
+        Map<Long, Integer> more = fewer == chunksA ? chunksB : chunksA;
+        long shared = 0;
+        for (Map.Entry<Long, Integer> chunk : fewer.entrySet()) {
+            if (more.containsKey(chunk.getKey())) shared += chunk.getValue();
+        }
+        long larger = Math.max(bytes(chunksA), bytes(chunksB));
+        return larger > 0 ? 100.0 * shared / larger : -1;
+    }
+
+    // Index keys of a chunk list; lists sharing many chunks very likely share some of these
+    static long[] probeKeys(byte[] chunkList) {
+        long[] hashes = distinct(chunkList).keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        return Arrays.copyOf(hashes, Math.min(PROBES, hashes.length));
+    }
+
+    // What keeping one copy of each distinct chunk across the files would free: their total size less the bytes
+    // of the distinct chunks, with files or parts of files beyond their chunk list counted as wholly their own
+    static long reclaimableBytes(List<ApplicationFile> files) {
+        Map<Long, Integer> union = new HashMap<>();
+        long total = 0;
+        long unlisted = 0;
+        for (ApplicationFile file : files) {
+            total += file.getSize();
+            unlisted += Math.max(0, file.getSize() - listedBytes(file.getContentChunks()));
+            union.putAll(distinct(file.getContentChunks()));
+        }
+        return Math.max(0, total - unlisted - bytes(union));
+    }
+
+    private static Map<Long, Integer> distinct(byte[] chunkList) {
+        ByteBuffer entries = ByteBuffer.wrap(chunkList);
+        Map<Long, Integer> chunks = new HashMap<>();
+        while (entries.remaining() >= ENTRY) {
+            chunks.put(entries.getLong(), entries.getInt());
+        }
+        return chunks;
+    }
+
+    private static long listedBytes(byte[] chunkList) {
+        ByteBuffer entries = ByteBuffer.wrap(chunkList);
+        long listed = 0;
+        while (entries.remaining() >= ENTRY) {
+            entries.getLong();
+            listed += entries.getInt();
+        }
+        return listed;
+    }
+
+    private static long bytes(Map<Long, Integer> chunks) {
+        long bytes = 0;
+        for (int length : chunks.values()) {
+            bytes += length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Keeps the catalog current for watched directories by rescanning only the files that change
+@Service
+public class DirectoryWatchService {
+    @Autowired
+    private FileScannerService fileScannerService;
+    @Autowired
+    private FileCatalogService fileCatalogService;
+    @Autowired
+    private DuplicateGroupService duplicateGroupService;
+
+    // Changes are applied once the tree has been quiet this long, or after ten times as long at most
+    @Value("${appmanager.watch.debounce-ms:2000}")
+    private long debounceMillis;
+
+    private enum Change { UPSERT, DELETE, RESCAN }
+
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    // Watched roots and the filters their scan was started with
+    private final Map<Path, ScanOptions> roots = new ConcurrentHashMap<>();
+    // Coalesced changes since the last flush; a later event for the same path replaces an earlier one
+    private final Map<Path, Change> pending = new LinkedHashMap<>();
+    // Roots scan jobs are storing results for, with how many jobs; their changes wait in pending until the jobs are
+    // done. Guarded by pending.
+    private final Map<Path, Integer> held = new HashMap<>();
+    private long firstPendingMillis;
+    private long lastEventMillis;
+    private Thread watcherThread;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        watcherThread = new Thread(this::processEvents, "directory-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "directory-watch-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushIfSettled, 250, 250, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws IOException {
+        flusher.shutdownNow();
+        watcherThread.interrupt();
+        watchService.close();
+    }
+
+    // Returns whether the directory was not watched before
+    public boolean watch(String directory, ScanOptions options) throws IOException {
+        Path root = Paths.get(directory).toAbsolutePath().normalize();
+        if (!Files.isDirectory(root)) {
+            throw new IOException("Not a directory: " + root);
+        }
+        if (roots.put(root, options) != null) return false;
+        registerTree(root, root);
+        return true;
+    }
+
+    // Watches a directory a job is about to scan, so changes made while it is walked are not missed. They are held
+    // back until release, since applying them before the job stores its results would let its older view of a file
+    // overwrite them.
+    public boolean watchAndHold(String directory, ScanOptions options) throws IOException {
+        Path root = Paths.get(directory).toAbsolutePath().normalize();
+        synchronized (pending) {
+            held.merge(root, 1, Integer::sum);
+        }
+        try {
+            return watch(directory, options);
+        } catch (IOException | RuntimeException e) {
+            release(directory);
+            throw e;
+        }
+    }
+
+    public void release(String directory) {
+        Path root = Paths.get(directory).toAbsolutePath().normalize();
+        synchronized (pending) {
+            held.computeIfPresent(root, (path, jobs) -> jobs == 1 ? null : jobs - 1);
+        }
+    }
+
+    public void unwatch(String directory) {
+        Path root = Paths.get(directory).toAbsolutePath().normalize();
+        roots.remove(root);
+        watchedDirectories.entrySet().removeIf(entry -> {
+            Path dir = entry.getValue();
+            if (!dir.startsWith(root) || roots.keySet().stream().anyMatch(dir::startsWith)) return false;
+            entry.getKey().cancel();
+            return true;
+        });
+    }
+
+    public Set<Path> getWatchedRoots() {
+        return new TreeSet<>(roots.keySet());
+    }
+
+    // WatchService only reports direct children, so every directory of the tree is registered except pruned ones.
+    // Links are followed as in the scan walk, so linked directories are watched under their linked paths.
+    private void registerTree(Path root, Path dir) throws IOException {
+        ScanOptions options = roots.get(root);
+        if (options == null) return;
+        Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path subdir, BasicFileAttributes attrs) throws IOException {
+                if (!subdir.equals(root) && options.prunes(root.relativize(subdir), subdir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = subdir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, subdir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void processEvents() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = watchedDirectories.get(key);
+            if (dir != null) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events were lost, so the whole directory is reconciled against the catalog
+                        record(dir, Change.RESCAN);
+                        continue;
+                    }
+                    Path child = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                        record(child, Change.DELETE);
+                    } else if (Files.isDirectory(child)) {
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            // Files may have landed in the new directory before it was registered
+                            record(child, Change.RESCAN);
+                        }
+                    } else {
+                        record(child, Change.UPSERT);
+                    }
+                }
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+    }
+
+    private void record(Path path, Change change) {
+        synchronized (pending) {
+            long now = System.currentTimeMillis();
+            if (pending.isEmpty()) {
+                firstPendingMillis = now;
+            }
+            lastEventMillis = now;
+            // A pending rescan already covers whatever else happens to the directory
+            if (pending.get(path) != Change.RESCAN) {
+                pending.put(path, change);
+            }
+        }
+    }
+
+    private void flushIfSettled() {
+        Map<Path, Change> changes = new LinkedHashMap<>();
+        synchronized (pending) {
+            long now = System.currentTimeMillis();
+            if (pending.isEmpty()) return;
+            if (now - lastEventMillis < debounceMillis && now - firstPendingMillis < 10 * debounceMillis) return;
+            pending.entrySet().removeIf(change -> {
+                if (isHeld(change.getKey())) return false;
+                changes.put(change.getKey(), change.getValue());
+                return true;
+            });
+            // Held changes start a new window once they are released
+            firstPendingMillis = now;
+        }
+        if (changes.isEmpty()) return;
+        try {
+            apply(changes);
+        } catch (Exception e) {
+            System.err.println("Error applying watched file changes, retrying them: " + e.getMessage());
+            retry(changes);
+        }
+    }
+
+    private boolean isHeld(Path path) {
+        for (Path root : held.keySet()) {
+            if (path.startsWith(root)) return true;
+        }
+        return false;
+    }
+
+    // Puts a failed batch back to be applied again once the tree has been quiet for the debounce. Applying is safe to
+    // repeat, and changes recorded since the batch was taken are newer, so they win unless the batch rescans.
+    private void retry(Map<Path, Change> changes) {
+        synchronized (pending) {
+            long now = System.currentTimeMillis();
+            if (pending.isEmpty()) {
+                firstPendingMillis = now;
+            }
+            lastEventMillis = now;
+            changes.forEach((path, change) -> {
+                if (change == Change.RESCAN) {
+                    pending.put(path, change);
+                } else {
+                    pending.putIfAbsent(path, change);
+                }
+            });
+        }
+    }
+
+    // Rows deleted in one step are committed before the next step runs, so they are passed on to the duplicate
+    // groups even when a later step fails
+    private void apply(Map<Path, Change> changes) throws Exception {
+        Set<File> upserts = new HashSet<>();
+        List<Path> deletions = new ArrayList<>();
+        List<ApplicationFile> removed = new ArrayList<>();
+        List<ApplicationFile> updated = List.of();
+        try {
+            for (Map.Entry<Path, Change> change : changes.entrySet()) {
+                Path path = change.getKey();
+                Path root = rootOf(path);
+                if (root == null) continue;
+                if (change.getValue() == Change.RESCAN && Files.isDirectory(path)) {
+                    registerTree(root, path);
+                    Set<String> present = new HashSet<>();
+                    fileScannerService.walkTree(root, path, roots.get(root), new ScanProgress(), (file, attrs) -> {
+                        upserts.add(file);
+                        present.add(file.getAbsolutePath());
+                    });
+                    removed.addAll(fileCatalogService.retainUnder(path, present));
+                } else if (accepts(root, path)) {
+                    // Also covers files deleted and recreated within the debounce window
+                    upserts.add(path.toFile());
+                } else {
+                    deletions.add(path);
+                }
+            }
+            removed.addAll(fileCatalogService.removeUnder(deletions));
+            updated = fileCatalogService.upsert(fileScannerService.scanFiles(upserts));
+            System.out.println("Watched directories: " + updated.size() + " files added or updated, "
+                    + removed.size() + " removed");
+        } finally {
+            duplicateGroupService.update(updated, removed);
+        }
+    }
+
+    // The innermost watched root containing the path, or null once it is no longer watched
+    private Path rootOf(Path path) {
+        Path root = null;
+        for (Path candidate : roots.keySet()) {
+            if (path.startsWith(candidate) && (root == null || candidate.startsWith(root))) {
+                root = candidate;
+            }
+        }
+        return root;
+    }
+
+    // Files that stopped passing the root's filters (e.g. shrank below the minimum size) are treated as deleted
+    private boolean accepts(Path root, Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            ScanOptions options = roots.get(root);
+            return options != null && options.accepts(root.relativize(file), file, attrs);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.appmanager.service;
+
+import java.util.List;
+import java.util.Set;
+
+// What an update did to the duplicate groups: the keys of the groups it replaced or dissolved, and the groups it
+// formed or changed. A group that came out the same is listed on both sides.
+public class DuplicateChanges {
+    private final Set<String> removedKeys;
+    private final List<DuplicateCluster> groups;
+
+    DuplicateChanges(Set<String> removedKeys, List<DuplicateCluster> groups) {
+        this.removedKeys = removedKeys;
+        this.groups = groups;
+    }
+
+    public Set<String> getRemovedKeys() {
+        return removedKeys;
+    }
+
+    public List<DuplicateCluster> getGroups() {
+        return groups;
+    }
+
+    public boolean isEmpty() {
+        return removedKeys.isEmpty() && groups.isEmpty();
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+
+import java.util.List;
+
+// A group of files found to be duplicates of each other, with statistics over the similarity scores that linked it
+// and the bytes deduplicating it would free
+public class DuplicateCluster {
+    private final String key;
+    private final List<ApplicationFile> files;
+    private final boolean exact;
+    private final double minSimilarity;
+    private final double maxSimilarity;
+    private final double averageSimilarity;
+    private final long reclaimableBytes;
+
+    DuplicateCluster(String key, List<ApplicationFile> files, boolean exact,
+                     double minSimilarity, double maxSimilarity, double averageSimilarity, long reclaimableBytes) {
+        this.key = key;
+        this.files = files;
+        this.exact = exact;
+        this.minSimilarity = minSimilarity;
+        this.maxSimilarity = maxSimilarity;
+        this.averageSimilarity = averageSimilarity;
+        this.reclaimableBytes = reclaimableBytes;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public List<ApplicationFile> getFiles() {
+        return files;
+    }
+
+    // Same content hash, as opposed to linked by similarity scores
+    public boolean isExact() {
+        return exact;
+    }
+
+    public double getMinSimilarity() {
+        return minSimilarity;
+    }
+
+    public double getMaxSimilarity() {
+        return maxSimilarity;
+    }
+
+    public double getAverageSimilarity() {
+        return averageSimilarity;
+    }
+
+    // All but the largest copy for exact groups; for similarity groups, what storing their shared content-defined
+    // chunks once would free
+    public long getReclaimableBytes() {
+        return reclaimableBytes;
+    }
+}
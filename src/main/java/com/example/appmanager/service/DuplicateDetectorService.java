@@ -1,219 +1,294 @@
 package com.example.appmanager.service;
 
 import com.example.appmanager.model.ApplicationFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.ArrayList;
 
 @Service
 public class DuplicateDetectorService {
+    // Files per fork-join leaf when scoring; small because candidate counts vary a lot from file to file
+    private static final int SCORING_BATCH = 32;
+    // Name patterns used while scoring video pairs, compiled once rather than per pair
+    private static final Pattern VIDEO_EXTENSION = Pattern.compile("\\.(mp4|avi|mov|mkv|wmv|flv|webm|m4v|3gp|ogv|ts|mts|m2ts|vob|asf|divx|xvid|h264|h265|hevc|avc|mpg|mpeg|rm|rmvb|swf|f4v)$");
+    private static final Pattern NAME_SEPARATORS = Pattern.compile("[._\\-\\s]+");
+    private static final Pattern HAS_DIGITS = Pattern.compile(".*\\d+.*");
+    private static final Pattern DIGITS = Pattern.compile("\\d+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @Value("${appmanager.duplicates.parallelism:0}")
+    private int parallelism;
+    @Value("${appmanager.duplicates.score-cache-size:100000}")
+    private int scoreCacheSize;
+
+    private ForkJoinPool scoringPool;
+    // Pair scores from earlier runs, so rescoring an unchanged catalog is mostly lookups
+    private SimilarityCache scoreCache;
+    // Groups of the stored catalog, kept current as files are added, changed and removed. Updates hold the write lock
+    // and top-k queries the read lock, which they only try for, so a query never waits behind an update.
+    private volatile DuplicateGraph catalogGraph;
+    private final ReentrantReadWriteLock catalogLock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    void startPool() {
+        scoringPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        scoreCache = new SimilarityCache(scoreCacheSize);
+    }
+
+    @PreDestroy
+    void stopPool() {
+        scoringPool.shutdownNow();
+    }
+
     public Map<String, List<ApplicationFile>> findDuplicates(List<ApplicationFile> files) {
+        Map<String, List<ApplicationFile>> duplicates = new LinkedHashMap<>();
+        for (DuplicateCluster cluster : findDuplicateGroups(files)) {
+            duplicates.put(cluster.getKey(), cluster.getFiles());
+        }
+        return duplicates;
+    }
+
+    // Exact groups by content hash first, then groups of files linked by similarity scores
+    public List<DuplicateCluster> findDuplicateGroups(List<ApplicationFile> files) {
         if (files == null || files.isEmpty()) {
-            return new HashMap<>();
+            return new ArrayList<>();
         }
         
         try {
-            // Debug: Log video files found
-            List<ApplicationFile> videoFiles = files.stream()
-                    .filter(f -> f != null && f.getFileType() != null && isVideoFile(f.getFileType()))
-                    .collect(Collectors.toList());
-            System.out.println("Found " + videoFiles.size() + " video files:");
-            for (ApplicationFile video : videoFiles) {
-                System.out.println("  - " + video.getName() + " (" + video.getSize() + " bytes, entropy: " + video.getEntropy() + ")");
-            }
-            
-            Map<String, List<ApplicationFile>> groupedByHash = files.stream()
-                    .filter(file -> file != null && file.getHash() != null)
-                    .collect(Collectors.groupingBy(ApplicationFile::getHash));
-            Map<String, List<ApplicationFile>> duplicates = groupedByHash.entrySet().stream()
-                    .filter(e -> e.getValue().size() > 1)
-                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-            
-            // Set 100% similarity for exact matches (SHA-256)
-            for (List<ApplicationFile> group : duplicates.values()) {
-                for (ApplicationFile file : group) {
-                    if (file != null) {
-                        file.setSimilarityScore(100.0);
-                    }
-                }
-            }
+            List<DuplicateCluster> clusters = new DuplicateGraph(this::scoreCandidates)
+                    .update(files, Collections.emptyList())
+                    .getGroups();
+            System.out.println("Found " + clusters.size() + " duplicate groups among " + files.size() + " files");
+            return clusters;
+        } catch (Exception e) {
+            System.err.println("Error in findDuplicates: " + e.getMessage());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
 
-            // Enhanced hybrid detection for files with unique hashes
-            List<ApplicationFile> nonDuplicateFiles = files.stream()
-                    .filter(f -> f != null && f.getHash() != null && groupedByHash.get(f.getHash()).size() == 1)
-                    .collect(Collectors.toList());
-            Map<String, List<ApplicationFile>> hybridDuplicates = new HashMap<>();
-            boolean[] visited = new boolean[nonDuplicateFiles.size()];
-            
-            // First, group video files separately for better detection
-            List<ApplicationFile> nonDuplicateVideoFiles = nonDuplicateFiles.stream()
-                    .filter(f -> f != null && f.getFileType() != null && isVideoFile(f.getFileType()))
-                    .collect(Collectors.toList());
-            
-            System.out.println("Processing " + nonDuplicateVideoFiles.size() + " video files for similarity...");
-            
-            // Create separate groups for different types of video similarities
-            List<List<ApplicationFile>> exactHashGroups = new ArrayList<>();
-            List<List<ApplicationFile>> contentBasedGroups = new ArrayList<>();
-            
-            // First, find exact hash matches (100% similarity)
-            Map<String, List<ApplicationFile>> videoHashGroups = nonDuplicateVideoFiles.stream()
-                    .filter(f -> f != null && f.getHash() != null)
-                    .collect(Collectors.groupingBy(ApplicationFile::getHash));
-            
-            for (List<ApplicationFile> hashGroup : videoHashGroups.values()) {
-                if (hashGroup.size() > 1) {
-                    for (ApplicationFile file : hashGroup) {
-                        file.setSimilarityScore(100.0);
-                    }
-                    exactHashGroups.add(hashGroup);
-                    
-                    // Mark these files as visited
-                    for (ApplicationFile file : hashGroup) {
-                        int index = nonDuplicateFiles.indexOf(file);
-                        if (index >= 0) {
-                            visited[index] = true;
-                        }
-                    }
-                }
-            }
-            
-            // Then, find content-based similarities for remaining videos
-            List<ApplicationFile> remainingVideos = nonDuplicateVideoFiles.stream()
-                    .filter(f -> !visited[nonDuplicateFiles.indexOf(f)])
-                    .collect(Collectors.toList());
-            
-            if (remainingVideos.size() > 1) {
-                contentBasedGroups = groupSimilarVideos(remainingVideos);
-            }
-            
-            // Combine all video groups
-            List<List<ApplicationFile>> allVideoGroups = new ArrayList<>();
-            allVideoGroups.addAll(exactHashGroups);
-            allVideoGroups.addAll(contentBasedGroups);
-            
-            System.out.println("Found " + allVideoGroups.size() + " video groups:");
-            for (List<ApplicationFile> group : allVideoGroups) {
-                System.out.println("  Group with " + group.size() + " videos:");
-                for (ApplicationFile file : group) {
-                    System.out.println("    - " + file.getName() + " (similarity: " + file.getSimilarityScore() + "%)");
-                }
-            }
-            
-            for (List<ApplicationFile> group : allVideoGroups) {
-                if (group.size() > 1) {
-                    // Create a synthetic key for the video group
-                    String key = "video-group-" + group.get(0).getName() + "-" + group.size();
-                    hybridDuplicates.put(key, group);
-                    
-                    // Mark these files as visited
-                    for (ApplicationFile file : group) {
-                        int index = nonDuplicateFiles.indexOf(file);
-                        if (index >= 0) {
-                            visited[index] = true;
-                        }
-                    }
-                }
-            }
-            
-            // Then process remaining files with the original algorithm
-            for (int i = 0; i < nonDuplicateFiles.size(); i++) {
-                if (visited[i]) continue;
-                ApplicationFile fileA = nonDuplicateFiles.get(i);
-                if (fileA == null) continue;
-                
-                List<ApplicationFile> group = new java.util.ArrayList<>();
-                group.add(fileA);
-                
-                for (int j = i + 1; j < nonDuplicateFiles.size(); j++) {
-                    if (visited[j]) continue;
-                    ApplicationFile fileB = nonDuplicateFiles.get(j);
-                    if (fileB == null) continue;
-                    
-                    double similarity = calculateEnhancedSimilarity(fileA, fileB);
-                    double threshold = getEnhancedSimilarityThreshold(fileA.getFileType());
-                    
-                    // For video files, focus on content similarity, not name
-                    if (isVideoFile(fileA.getFileType()) && isVideoFile(fileB.getFileType())) {
-                        // Use content-based similarity as primary factor
-                        double contentSimilarity = calculateVideoContentBasedSimilarity(fileA, fileB);
-                        double nameSimilarity = calculateVideoNameSimilarity(fileA.getName(), fileB.getName());
-                        
-                        // Weight content much higher than name for video files
-                        similarity = (contentSimilarity * 0.8) + (nameSimilarity * 0.2);
-                        
-                        // Additional content-based checks for video files
-                        double sizeDiff = Math.abs(fileA.getSize() - fileB.getSize()) / Math.max(fileA.getSize(), fileB.getSize());
-                        double entropyDiff = Math.abs(fileA.getEntropy() - fileB.getEntropy());
-                        
-                        // If content is very similar, consider them duplicates regardless of name
-                        if (contentSimilarity > 60.0 || (sizeDiff < 0.2 && entropyDiff < 0.3)) {
-                            similarity = Math.max(similarity, 50.0);
-                        }
-                    }
-                    
-                    if (similarity > threshold) {
-                        fileB.setSimilarityScore(similarity);
-                        group.add(fileB);
-                        visited[j] = true;
-                    }
-                }
-                if (group.size() > 1) {
-                    // Set similarity for the first file based on the group
-                    double avgSimilarity = group.stream()
-                        .filter(f -> f != null)
-                        .mapToDouble(ApplicationFile::getSimilarityScore)
-                        .average()
-                        .orElse(0.0);
-                    fileA.setSimilarityScore(avgSimilarity);
-                    
-                    // Use a synthetic key for hybrid groups
-                    String key = "hybrid-" + fileA.getName() + "-" + fileA.getSize();
-                    hybridDuplicates.put(key, group);
-                }
+    // Starts tracking the groups of the catalog from scratch; the changes list every group. The new groups are built
+    // aside, so queries keep being answered from the old ones meanwhile.
+    public DuplicateChanges rebuildCatalogGroups(List<ApplicationFile> files) {
+        DuplicateGraph graph = new DuplicateGraph(this::scoreCandidates);
+        DuplicateChanges changes = graph.update(files, Collections.emptyList());
+        catalogLock.writeLock().lock();
+        try {
+            catalogGraph = graph;
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+        return changes;
+    }
+
+    // Applies inserted or updated and deleted catalog files to the tracked groups. Only the changed files are scored,
+    // against their candidates, and only the groups they were or end up in are replaced. A failed update drops the
+    // tracked groups, so the next one has to rebuild them.
+    public DuplicateChanges updateCatalogGroups(Collection<ApplicationFile> upserted, Collection<ApplicationFile> deleted) {
+        catalogLock.writeLock().lock();
+        try {
+            if (catalogGraph == null) {
+                throw new IllegalStateException("Catalog duplicate groups have not been built");
             }
-            
-            // Second pass: Look for any remaining video files that might be similar
-            List<ApplicationFile> remainingVideoFiles = nonDuplicateFiles.stream()
-                    .filter(f -> f != null && !visited[nonDuplicateFiles.indexOf(f)] && 
-                               f.getFileType() != null && isVideoFile(f.getFileType()))
-                    .collect(Collectors.toList());
-            
-            if (remainingVideoFiles.size() > 1) {
-                List<List<ApplicationFile>> additionalVideoGroups = groupSimilarVideos(remainingVideoFiles);
-                for (List<ApplicationFile> group : additionalVideoGroups) {
-                    if (group.size() > 1) {
-                        // Set similarity scores for the group
-                        double avgSimilarity = group.stream()
-                            .mapToDouble(ApplicationFile::getSimilarityScore)
-                            .average()
-                            .orElse(0.0);
-                        
-                        for (ApplicationFile file : group) {
-                            file.setSimilarityScore(avgSimilarity);
+            return catalogGraph.update(upserted, deleted);
+        } catch (RuntimeException e) {
+            catalogGraph = null;
+            throw e;
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    public boolean isTrackingCatalogGroups() {
+        return catalogGraph != null;
+    }
+
+    // The catalog files most like the one at the path, best first and at most limit of them, or nothing while the
+    // groups are not built or an update is being applied. Pairs are scored as in detection, but without a threshold:
+    // text pairs only as far as it takes to beat the worst of the files found so far.
+    public Optional<List<SimilarFile>> findSimilarInCatalog(String path, int limit) {
+        if (!catalogLock.readLock().tryLock()) return Optional.empty();
+        try {
+            if (catalogGraph == null) return Optional.empty();
+            return Optional.of(catalogGraph.similarTo(path, limit,
+                    (a, b, features, k, floor) -> cachedScore(a, b, features, k, floor, false)));
+        } finally {
+            catalogLock.readLock().unlock();
+        }
+    }
+
+    // For when the stored groups no longer match the tracked ones, so the next update rebuilds both
+    public void forgetCatalogGroups() {
+        catalogLock.writeLock().lock();
+        try {
+            catalogGraph = null;
+        } finally {
+            catalogLock.writeLock().unlock();
+        }
+    }
+
+    // Scores the listed files of the index against their candidates, linking those above the threshold for their
+    // type
+    private DuplicateGraph.ScoredPairs scoreCandidates(CandidateIndex index, int[] slots, BitSet listed) {
+        System.out.println("Scoring similarity for " + slots.length + " files with unique hashes...");
+        PairScoringTask scoring = new PairScoringTask(index, slots, listed, 0, slots.length);
+        DuplicateGraph.ScoredPairs pairs = parallelism == 1 || slots.length <= SCORING_BATCH
+                ? scoring.compute() : scoringPool.invoke(scoring);
+        System.out.println("Pair score cache: " + scoreCache.getHits() + " hits, " + scoreCache.getMisses()
+                + " misses, " + scoreCache.getEvictions() + " evictions, " + scoreCache.size() + " entries");
+        return pairs;
+    }
+
+    // Scores the candidate pairs of a range of slots, splitting the range across the pool. Each leaf fills its own
+    // buffer and buffers are concatenated in range order, so the pairs come out exactly as a serial scan finds them.
+    private class PairScoringTask extends RecursiveTask<DuplicateGraph.ScoredPairs> {
+        private static final long serialVersionUID = 1L;
+
+        private final CandidateIndex candidateIndex;
+        private final int[] slots;
+        private final BitSet listed;
+        private final int from;
+        private final int to;
+
+        PairScoringTask(CandidateIndex candidateIndex, int[] slots, BitSet listed, int from, int to) {
+            this.candidateIndex = candidateIndex;
+            this.slots = slots;
+            this.listed = listed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected DuplicateGraph.ScoredPairs compute() {
+            if (to - from <= SCORING_BATCH) {
+                DuplicateGraph.ScoredPairs pairs = new DuplicateGraph.ScoredPairs();
+                PairFeatures features = new PairFeatures();
+                // When every indexed file is listed, each pair is found from its lower slot alone
+                boolean allListed = candidateIndex.size() == slots.length;
+                for (int k = from; k < to; k++) {
+                    int i = slots[k];
+                    int[] candidates = allListed ? candidateIndex.candidatesAfter(i) : candidateIndex.candidatesOf(i);
+                    candidateIndex.compare(i, candidates, features);
+                    for (int c = 0; c < candidates.length; c++) {
+                        int j = candidates[c];
+                        if (j < i && listed.get(j)) continue;
+                        // Scored from the lower slot, as a full scan would
+                        int a = Math.min(i, j);
+                        int b = Math.max(i, j);
+                        ApplicationFile fileA = candidateIndex.fileAt(a);
+                        ApplicationFile fileB = candidateIndex.fileAt(b);
+                        double similarity = cachedScore(fileA, fileB, features, c, pairThreshold(fileA, fileB), true);
+                        if (similarity > pairThreshold(fileA, fileB)) {
+                            pairs.add(a, b, similarity);
                         }
-                        
-                        // Create a synthetic key for the additional video group
-                        String key = "video-group-2-" + group.get(0).getName() + "-" + group.size();
-                        hybridDuplicates.put(key, group);
                     }
                 }
+                return pairs;
             }
-            // Merge SHA and hybrid duplicates
-            duplicates.putAll(hybridDuplicates);
-            return duplicates;
-        } catch (Exception e) {
-            System.err.println("Error in findDuplicates: " + e.getMessage());
-            e.printStackTrace();
-            return new HashMap<>();
+            int middle = (from + to) >>> 1;
+            PairScoringTask left = new PairScoringTask(candidateIndex, slots, listed, from, middle);
+            PairScoringTask right = new PairScoringTask(candidateIndex, slots, listed, middle, to);
+            left.fork();
+            DuplicateGraph.ScoredPairs rightPairs = right.compute();
+            DuplicateGraph.ScoredPairs pairs = left.join();
+            pairs.append(rightPairs);
+            return pairs;
         }
     }
 
-    private double calculateEnhancedSimilarity(ApplicationFile a, ApplicationFile b) {
+    // Text pairs are only scored as far as it takes to tell whether they reach stopBelow. A score below it may be a
+    // lower bound, so it is kept, if at all, under keys carrying stopBelow; a score reaching it is exact and kept
+    // under the plain keys, which any later lookup can use.
+    private double cachedScore(ApplicationFile a, ApplicationFile b, PairFeatures features, int k, double stopBelow,
+                               boolean keepLowerBounds) {
+        String keyA = scoreKey(a);
+        String keyB = scoreKey(b);
+        if (stopBelow <= 0 || !"txt".equals(a.getFileType()) || !"txt".equals(b.getFileType())) {
+            return scoreCache.get(keyA, keyB, () -> scorePair(a, b, features, k, 0.0));
+        }
+        Double exact = scoreCache.peek(keyA, keyB);
+        if (exact != null) return exact;
+        Supplier<Double> bounded = () -> {
+            double score = scorePair(a, b, features, k, stopBelow);
+            if (score >= stopBelow) scoreCache.put(keyA, keyB, score);
+            return score;
+        };
+        if (!keepLowerBounds) return bounded.get();
+        return scoreCache.get(keyA + ":below" + stopBelow, keyB + ":below" + stopBelow, bounded);
+    }
+
+    // What the score of a pair depends on: the content and type of both files, and the names of videos
+    private static String scoreKey(ApplicationFile file) {
+        String key = file.getHashAlgorithm() + ":" + file.getHash() + ":" + file.getFileType();
+        return isVideoFile(file.getFileType()) ? key + ":" + file.getName() : key;
+    }
+
+    // Files with content-defined chunk lists score at least the share of their content they have in common, whatever
+    // their types say. The size and entropy comparisons of the pair are entry k of the features.
+    private double scorePair(ApplicationFile a, ApplicationFile b, PairFeatures features, int k, double stopBelow) {
+        double overlap = ContentChunks.overlap(a.getContentChunks(), b.getContentChunks());
+        return Math.max(overlap, scoreByType(a, b, features, k, stopBelow));
+    }
+
+    // Videos that only differ in container share a base name; otherwise content is weighted much higher than name
+    private double scoreByType(ApplicationFile a, ApplicationFile b, PairFeatures features, int k, double stopBelow) {
+        double sizeDiff = features.sizeDiff[k];
+        double sizeRatio = features.sizeRatio[k];
+        double entropyDiff = features.entropyDiff[k];
+        double entropyRatio = features.entropyRatio[k];
+        if (!isVideoFile(a.getFileType()) || !isVideoFile(b.getFileType())) {
+            return calculateEnhancedSimilarity(a, b, sizeDiff, sizeRatio, entropyDiff, entropyRatio, stopBelow);
+        }
+        if (!sameVideoLength(a, b)) {
+            return ssdeepCompare(a.getSsdeepHash(), b.getSsdeepHash()); // Different streams; only shared bytes count
+        }
+        if (videoBaseName(a).equals(videoBaseName(b))) {
+            return 85.0; // High similarity for same base name
+        }
+        double contentSimilarity = calculateVideoContentBasedSimilarity(a, b, sizeDiff, sizeRatio, entropyDiff, entropyRatio);
+        double nameSimilarity = calculateVideoNameSimilarity(a.getName(), b.getName());
+        double similarity = (contentSimilarity * 0.8) + (nameSimilarity * 0.2);
+        
+        // If content is very similar, consider them duplicates regardless of name
+        if (contentSimilarity > 60.0 || (sizeDiff < 0.2 && entropyDiff < 0.3)) {
+            similarity = Math.max(similarity, 50.0);
+        }
+        return similarity;
+    }
+
+    // False only when both container headers gave a duration and they are more than a second, or 2% of the longer
+    // one, apart; a remuxed or re-encoded copy keeps its length, while names, sizes and entropy say little
+    private static boolean sameVideoLength(ApplicationFile a, ApplicationFile b) {
+        long durationA = a.getVideoDuration();
+        long durationB = b.getVideoDuration();
+        if (durationA <= 0 || durationB <= 0) return true;
+        return Math.abs(durationA - durationB) <= Math.max(1000, Math.max(durationA, durationB) / 50);
+    }
+
+    private String videoBaseName(ApplicationFile file) {
+        return VIDEO_EXTENSION.matcher(file.getName()).replaceAll("");
+    }
+
+    private double calculateEnhancedSimilarity(ApplicationFile a, ApplicationFile b, double sizeDiff, double sizeRatio,
+                                               double entropyDiff, double entropyRatio, double stopBelow) {
         if (a == null || b == null) {
             return 0.0;
         }
@@ -221,39 +296,51 @@ public class DuplicateDetectorService {
         // Enhanced text file similarity with multiple algorithms
         if (a.getFileType() != null && b.getFileType() != null && 
             a.getFileType().equals("txt") && b.getFileType().equals("txt")) {
-            try {
-                double jaccard = jaccardSimilarity(a.getPath(), b.getPath());
-                double cosine = cosineSimilarity(a.getPath(), b.getPath());
-                double levenshtein = levenshteinSimilarity(a.getPath(), b.getPath());
-                
-                // Weighted combination of multiple similarity measures
-                return (jaccard * 0.4 + cosine * 0.4 + levenshtein * 0.2) * 100.0;
-            } catch (Exception e) { 
-                System.err.println("Error calculating enhanced text similarity: " + e.getMessage());
-                return 0.0;
+            // Estimated from MinHash signatures when both files have one. Below stopBelow the score is not needed, so
+            // with none every measure is worked out in full.
+            double jaccard = MinHash.similarity(a.getMinHash(), b.getMinHash());
+            double threshold = stopBelow / 100.0;
+            if (jaccard >= 0 && jaccard * 0.4 + 0.6 <= threshold) {
+                return (jaccard * 0.4) * 100.0; // Cannot reach the threshold even if the texts match otherwise
+            }
+            // The rest comes from the word profiles stored at scan time; files stored before they were kept are
+            // left to their MinHash estimate until they are rescanned
+            TextProfile profileA = TextProfile.of(a.getTextProfile());
+            TextProfile profileB = TextProfile.of(b.getTextProfile());
+            if (profileA == null || profileB == null) {
+                return Math.max(0.0, jaccard) * 100.0;
+            }
+            if (jaccard < 0) {
+                jaccard = profileA.jaccard(profileB);
+            }
+            double cosine = profileA.cosine(profileB);
+
+            // Weighted combination of multiple similarity measures; edit distance is only worked out as far as it can
+            // still lift the pair over the threshold
+            double partial = jaccard * 0.4 + cosine * 0.4;
+            double needed = (threshold - partial) / 0.2;
+            if (needed > 1.0) {
+                return partial * 100.0;
             }
+            double levenshtein = Math.max(0.0, profileA.editSimilarity(profileB, needed));
+            return (partial + levenshtein * 0.2) * 100.0;
         }
         
         // Enhanced audio file similarity with fingerprinting
         if (a.getFileType() != null && b.getFileType() != null &&
             isAudioFile(a.getFileType()) && isAudioFile(b.getFileType())) {
             // First try ssdeep comparison
-            if (a.getSsdeepHash() != null && b.getSsdeepHash() != null && 
-                !a.getSsdeepHash().isEmpty() && !b.getSsdeepHash().isEmpty()) {
-                try {
-                    int score = ssdeepCompare(a.getSsdeepHash(), b.getSsdeepHash());
-                    if (score > 0) {
-                        return (double) score;
-                    }
-                } catch (Exception e) { 
-                    System.err.println("Error comparing ssdeep hashes: " + e.getMessage());
-                }
+            int score = ssdeepCompare(a.getSsdeepHash(), b.getSsdeepHash());
+            // Decoded audio compares on what it sounds like; ssdeep still catches near-identical bytes
+            double fingerprint = AudioFingerprint.similarity(a.getAudioFingerprint(), b.getAudioFingerprint());
+            if (fingerprint >= 0) {
+                return Math.max(fingerprint, score);
+            }
+            if (score > 0) {
+                return (double) score;
             }
             
             // Enhanced audio analysis
-            double sizeDiff = Math.abs(a.getSize() - b.getSize()) / Math.max(a.getSize(), b.getSize());
-            double entropyDiff = Math.abs(a.getEntropy() - b.getEntropy());
-            
             // Audio-specific similarity detection
             if (sizeDiff < 0.05 && entropyDiff < 0.05) {
                 return 95.0; // Very high similarity for audio files
@@ -270,34 +357,25 @@ public class DuplicateDetectorService {
         if (a.getFileType() != null && b.getFileType() != null &&
             isVideoFile(a.getFileType()) && isVideoFile(b.getFileType())) {
             // First try ssdeep comparison for video files (content-based)
-            if (a.getSsdeepHash() != null && b.getSsdeepHash() != null && 
-                !a.getSsdeepHash().isEmpty() && !b.getSsdeepHash().isEmpty()) {
-                try {
-                    int score = ssdeepCompare(a.getSsdeepHash(), b.getSsdeepHash());
-                    if (score > 0) {
-                        return (double) score; // ssdeep provides content-based similarity
-                    }
-                } catch (Exception e) { 
-                    System.err.println("Error comparing ssdeep hashes for video: " + e.getMessage());
-                }
+            int score = ssdeepCompare(a.getSsdeepHash(), b.getSsdeepHash());
+            if (score > 0) {
+                return (double) score; // ssdeep provides content-based similarity
             }
             
             // Use enhanced video content similarity (content-focused)
-            double contentSimilarity = calculateVideoContentBasedSimilarity(a, b);
+            double contentSimilarity = calculateVideoContentBasedSimilarity(a, b, sizeDiff, sizeRatio,
+                    entropyDiff, entropyRatio);
             if (contentSimilarity > 0) {
                 return contentSimilarity;
             }
             
             // Cross-format video similarity detection
-            double crossFormatSimilarity = calculateCrossFormatVideoSimilarity(a, b);
+            double crossFormatSimilarity = calculateCrossFormatVideoSimilarity(a, b, sizeDiff, entropyDiff);
             if (crossFormatSimilarity > 0) {
                 return crossFormatSimilarity;
             }
             
             // Enhanced video-specific similarity detection with content-based algorithms
-            double sizeDiff = Math.abs(a.getSize() - b.getSize()) / Math.max(a.getSize(), b.getSize());
-            double entropyDiff = Math.abs(a.getEntropy() - b.getEntropy());
-            
             // More aggressive content-based similarity thresholds for video files
             if (sizeDiff < 0.05 && entropyDiff < 0.05) {
                 return 98.0; // Very high content similarity
@@ -314,19 +392,19 @@ public class DuplicateDetectorService {
             }
             
             // Additional content-based checks for video files
-            double perceptualSimilarity = calculatePerceptualSimilarity(a, b);
+            double perceptualSimilarity = calculatePerceptualSimilarity(sizeRatio, entropyRatio);
             if (perceptualSimilarity > 70.0) {
                 return perceptualSimilarity;
             }
             
             // Structural similarity check
-            double structuralSimilarity = analyzeVideoStructure(a, b);
+            double structuralSimilarity = analyzeVideoStructure(sizeDiff, entropyDiff);
             if (structuralSimilarity > 60.0) {
                 return structuralSimilarity;
             }
             
             // Content pattern analysis
-            double contentPatternSimilarity = analyzeContentPatterns(a, b);
+            double contentPatternSimilarity = analyzeContentPatterns(sizeDiff, entropyDiff);
             if (contentPatternSimilarity > 50.0) {
                 return contentPatternSimilarity;
             }
@@ -345,6 +423,12 @@ public class DuplicateDetectorService {
             }
         }
         
+        // Decoded images compare on what they look like; ssdeep still catches near-identical bytes
+        if (a.getImageHash() != null && b.getImageHash() != null) {
+            int score = ssdeepCompare(a.getSsdeepHash(), b.getSsdeepHash());
+            return Math.max(ImageHash.similarity(a.getImageHash(), b.getImageHash()), score);
+        }
+
         // Enhanced binary file similarity with fuzzy matching
         if (a.getFileType() != null && b.getFileType() != null &&
             !a.getFileType().equals("txt") && !b.getFileType().equals("txt") && 
@@ -353,21 +437,12 @@ public class DuplicateDetectorService {
             // Fuzzy binary comparison using ssdeep
             if (a.getSsdeepHash() != null && b.getSsdeepHash() != null && 
                 !a.getSsdeepHash().isEmpty() && !b.getSsdeepHash().isEmpty()) {
-                try {
-                    int score = ssdeepCompare(a.getSsdeepHash(), b.getSsdeepHash());
-                    return (double) score;
-                } catch (Exception e) { 
-                    System.err.println("Error comparing ssdeep hashes: " + e.getMessage());
-                    return 0.0;
-                }
+                return (double) ssdeepCompare(a.getSsdeepHash(), b.getSsdeepHash());
             }
             
             // Enhanced binary similarity based on size, type, and entropy
             if (!a.getFileType().equals(b.getFileType())) return 0.0;
             
-            double sizeDiff = Math.abs(a.getSize() - b.getSize()) / Math.max(a.getSize(), b.getSize());
-            double entropyDiff = Math.abs(a.getEntropy() - b.getEntropy());
-            
             if (sizeDiff < 0.01 && entropyDiff < 0.01) {
                 return 98.0; // Very high similarity
             } else if (sizeDiff < 0.05 && entropyDiff < 0.05) {
@@ -381,7 +456,6 @@ public class DuplicateDetectorService {
         if (a.getFileType() == null || b.getFileType() == null || 
             !a.getFileType().equals(b.getFileType())) return 0.0;
         if (a.getSize() != b.getSize()) return 0.0;
-        double entropyDiff = Math.abs(a.getEntropy() - b.getEntropy());
         if (entropyDiff < 0.005) return 98.0; // Very high similarity if entropy matches very closely
         if (entropyDiff < 0.01) return 95.0; // High similarity
         return Math.max(0.0, 100.0 - (entropyDiff * 1000)); // Scale entropy difference
@@ -391,12 +465,12 @@ public class DuplicateDetectorService {
         if (nameA == null || nameB == null) return 0.0;
         
         // Remove common video extensions
-        nameA = nameA.replaceAll("\\.(mp4|avi|mov|mkv|wmv|flv|webm|m4v|3gp|ogv|ts|mts|m2ts|vob|asf|divx|xvid|h264|h265|hevc|avc|mpg|mpeg|rm|rmvb|swf|f4v)$", "");
-        nameB = nameB.replaceAll("\\.(mp4|avi|mov|mkv|wmv|flv|webm|m4v|3gp|ogv|ts|mts|m2ts|vob|asf|divx|xvid|h264|h265|hevc|avc|mpg|mpeg|rm|rmvb|swf|f4v)$", "");
+        nameA = VIDEO_EXTENSION.matcher(nameA).replaceAll("");
+        nameB = VIDEO_EXTENSION.matcher(nameB).replaceAll("");
         
         // Remove common separators and special characters
-        nameA = nameA.replaceAll("[._\\-\\s]+", " ").trim();
-        nameB = nameB.replaceAll("[._\\-\\s]+", " ").trim();
+        nameA = NAME_SEPARATORS.matcher(nameA).replaceAll(" ").trim();
+        nameB = NAME_SEPARATORS.matcher(nameB).replaceAll(" ").trim();
         
         if (nameA.equals(nameB)) {
             return 95.0; // Exact name match
@@ -416,13 +490,13 @@ public class DuplicateDetectorService {
         double patternBonus = (hasCommonPatternA && hasCommonPatternB) ? 30.0 : 0.0;
         
         // Check for numeric patterns (like video1, video2, etc.)
-        if (nameA.matches(".*\\d+.*") && nameB.matches(".*\\d+.*")) {
+        if (HAS_DIGITS.matcher(nameA).matches() && HAS_DIGITS.matcher(nameB).matches()) {
             patternBonus += 15.0; // Bonus for numeric patterns
         }
         
         // Calculate Jaccard similarity for words
-        String[] wordsA = nameA.split("\\s+");
-        String[] wordsB = nameB.split("\\s+");
+        String[] wordsA = WHITESPACE.split(nameA);
+        String[] wordsB = WHITESPACE.split(nameB);
         
         java.util.Set<String> setA = new java.util.HashSet<>(java.util.Arrays.asList(wordsA));
         java.util.Set<String> setB = new java.util.HashSet<>(java.util.Arrays.asList(wordsB));
@@ -451,7 +525,7 @@ public class DuplicateDetectorService {
         return Math.min(95.0, finalSimilarity);
     }
     
-    private boolean isAudioFile(String fileType) {
+    static boolean isAudioFile(String fileType) {
         if (fileType == null) return false;
         return fileType.equals("wav") || fileType.equals("mp3") || fileType.equals("flac") || 
                fileType.equals("aac") || fileType.equals("ogg") || fileType.equals("m4a") ||
@@ -460,7 +534,33 @@ public class DuplicateDetectorService {
                fileType.equals("pls");
     }
     
-    private boolean isVideoFile(String fileType) {
+    // Groups files by size and content hash. A fast hash only nominates duplicates: files hashed with one are grouped
+    // by the SHA-256 that confirmed the collision, with files hashed with SHA-256 outright, and a file without a
+    // confirmation is left in a group of its own, since its match may be a collision.
+    static Map<String, List<ApplicationFile>> groupByContent(List<ApplicationFile> files) {
+        Map<String, List<ApplicationFile>> groups = new HashMap<>();
+        for (ApplicationFile file : files) {
+            String key;
+            if (!file.getHashAlgorithm().equals(HashStrategy.XXHASH64.getAlgorithm())) {
+                key = file.getSize() + ":" + file.getHashAlgorithm() + ":" + file.getHash();
+            } else if (file.getConfirmedHash().isEmpty()) {
+                key = file.getSize() + ":" + file.getHashAlgorithm() + ":" + file.getHash() + ":unconfirmed:" + file.getPath();
+            } else {
+                key = file.getSize() + ":" + HashStrategy.SHA256.getAlgorithm() + ":" + file.getConfirmedHash();
+            }
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(file);
+        }
+        return groups;
+    }
+
+    // The hash files sharing their content share: the confirming SHA-256 of a fast-hashed file where it has one, so
+    // that it meets files hashed with SHA-256 outright
+    static String contentHash(ApplicationFile file) {
+        return file.getHashAlgorithm().equals(HashStrategy.XXHASH64.getAlgorithm()) && !file.getConfirmedHash().isEmpty()
+                ? file.getConfirmedHash() : file.getHash();
+    }
+
+    static boolean isVideoFile(String fileType) {
         if (fileType == null) return false;
         return fileType.equals("mp4") || fileType.equals("avi") || fileType.equals("mov") || 
                fileType.equals("mkv") || fileType.equals("wmv") || fileType.equals("flv") ||
@@ -473,6 +573,12 @@ public class DuplicateDetectorService {
                fileType.equals("rmvb") || fileType.equals("swf") || fileType.equals("f4v");
     }
 
+    // The stricter of the two types' thresholds, so a pair across types, e.g. linked by shared chunks, is judged the
+    // same whichever file comes first
+    private double pairThreshold(ApplicationFile a, ApplicationFile b) {
+        return Math.max(getEnhancedSimilarityThreshold(a.getFileType()), getEnhancedSimilarityThreshold(b.getFileType()));
+    }
+
     private double getEnhancedSimilarityThreshold(String fileType) {
         if (fileType == null) return 80.0;
         if (fileType.equals("txt")) return 75.0; // 75% for text files (more lenient)
@@ -481,195 +587,22 @@ public class DuplicateDetectorService {
         return 80.0; // 80% for other binary files
     }
 
-    // Enhanced similarity: size, type, and entropy must match closely
-    private boolean isSimilar(ApplicationFile a, ApplicationFile b) {
-        if (a.getFileType().equals("txt") && b.getFileType().equals("txt")) {
-            try {
-                double jaccard = jaccardSimilarity(a.getPath(), b.getPath());
-                if (jaccard > 0.75) return true; // threshold for near-duplicate
-            } catch (Exception e) { /* ignore */ }
-        }
-        if (!a.getFileType().equals("txt") && !b.getFileType().equals("txt")) {
-            // Fuzzy binary comparison using ssdeep
-            if (a.getSsdeepHash() != null && b.getSsdeepHash() != null && !a.getSsdeepHash().isEmpty() && !b.getSsdeepHash().isEmpty()) {
-                try {
-                    int score = ssdeepCompare(a.getSsdeepHash(), b.getSsdeepHash());
-                    if (score > 85) return true; // threshold for near-duplicate binaries
-                } catch (Exception e) { /* ignore */ }
-            }
-        }
-        if (a.getSize() != b.getSize()) return false;
-        if (!a.getFileType().equals(b.getFileType())) return false;
-        return Math.abs(a.getEntropy() - b.getEntropy()) < 0.01;
-    }
-
-    private double jaccardSimilarity(String pathA, String pathB) throws java.io.IOException {
-        if (pathA == null || pathB == null) return 0.0;
-        
-        java.util.Set<String> setA = new java.util.HashSet<>(java.util.Arrays.asList(
-            new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(pathA)))
-                .toLowerCase().replaceAll("[^a-z0-9 ]", " ").split("\\s+")
-        ));
-        java.util.Set<String> setB = new java.util.HashSet<>(java.util.Arrays.asList(
-            new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(pathB)))
-                .toLowerCase().replaceAll("[^a-z0-9 ]", " ").split("\\s+")
-        ));
-        java.util.Set<String> intersection = new java.util.HashSet<>(setA);
-        intersection.retainAll(setB);
-        java.util.Set<String> union = new java.util.HashSet<>(setA);
-        union.addAll(setB);
-        return union.isEmpty() ? 0.0 : (double) intersection.size() / union.size();
-    }
-    
-    private double cosineSimilarity(String pathA, String pathB) throws java.io.IOException {
-        if (pathA == null || pathB == null) return 0.0;
-        
-        String contentA = new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(pathA))).toLowerCase();
-        String contentB = new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(pathB))).toLowerCase();
-        
-        java.util.Map<String, Integer> vectorA = new java.util.HashMap<>();
-        java.util.Map<String, Integer> vectorB = new java.util.HashMap<>();
-        
-        // Create word frequency vectors
-        for (String word : contentA.replaceAll("[^a-z0-9 ]", " ").split("\\s+")) {
-            if (!word.isEmpty()) {
-                vectorA.put(word, vectorA.getOrDefault(word, 0) + 1);
-            }
-        }
-        
-        for (String word : contentB.replaceAll("[^a-z0-9 ]", " ").split("\\s+")) {
-            if (!word.isEmpty()) {
-                vectorB.put(word, vectorB.getOrDefault(word, 0) + 1);
-            }
-        }
-        
-        // Calculate cosine similarity
-        double dotProduct = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
-        
-        java.util.Set<String> allWords = new java.util.HashSet<>(vectorA.keySet());
-        allWords.addAll(vectorB.keySet());
-        
-        for (String word : allWords) {
-            int freqA = vectorA.getOrDefault(word, 0);
-            int freqB = vectorB.getOrDefault(word, 0);
-            dotProduct += freqA * freqB;
-            normA += freqA * freqA;
-            normB += freqB * freqB;
-        }
-        
-        if (normA == 0 || normB == 0) return 0.0;
-        return dotProduct / (Math.sqrt(normA) * Math.sqrt(normB));
-    }
-    
-    private double levenshteinSimilarity(String pathA, String pathB) throws java.io.IOException {
-        if (pathA == null || pathB == null) return 0.0;
-        
-        String contentA = new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(pathA)));
-        String contentB = new String(java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(pathB)));
-        
-        int distance = levenshteinDistance(contentA, contentB);
-        int maxLength = Math.max(contentA.length(), contentB.length());
-        
-        return maxLength == 0 ? 1.0 : 1.0 - ((double) distance / maxLength);
-    }
-    
-    private int levenshteinDistance(String s1, String s2) {
-        if (s1 == null || s2 == null) return Integer.MAX_VALUE;
-        
-        int[][] dp = new int[s1.length() + 1][s2.length() + 1];
-        
-        for (int i = 0; i <= s1.length(); i++) {
-            dp[i][0] = i;
-        }
-        
-        for (int j = 0; j <= s2.length(); j++) {
-            dp[0][j] = j;
-        }
-        
-        for (int i = 1; i <= s1.length(); i++) {
-            for (int j = 1; j <= s2.length(); j++) {
-                if (s1.charAt(i - 1) == s2.charAt(j - 1)) {
-                    dp[i][j] = dp[i - 1][j - 1];
-                } else {
-                    dp[i][j] = 1 + Math.min(dp[i - 1][j - 1], Math.min(dp[i - 1][j], dp[i][j - 1]));
-                }
-            }
-        }
-        
-        return dp[s1.length()][s2.length()];
-    }
-
-    private int ssdeepCompare(String hashA, String hashB) throws java.io.IOException, InterruptedException {
+    private int ssdeepCompare(String hashA, String hashB) {
         if (hashA == null || hashB == null || hashA.isEmpty() || hashB.isEmpty()) return 0;
-        
-        try {
-            // Use ssdeep -v for comparison
-            ProcessBuilder pb = new ProcessBuilder("ssdeep", "-v", hashA, hashB);
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-            java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.InputStreamReader(process.getInputStream()));
-            String line;
-            int score = 0;
-            while ((line = reader.readLine()) != null) {
-                if (line.contains(":")) {
-                    // Expected format: "hash1:hash2:score"
-                    String[] parts = line.split(":");
-                    if (parts.length == 3) {
-                        try {
-                            score = Integer.parseInt(parts[2].trim());
-                            break;
-                        } catch (NumberFormatException e) {
-                            // Try alternative parsing
-                            String scoreStr = parts[2].replaceAll("[^0-9]", "");
-                            if (!scoreStr.isEmpty()) {
-                                score = Integer.parseInt(scoreStr);
-                                break;
-                            }
-                        }
-                    }
-                }
-            }
-            process.waitFor();
-            return score;
-        } catch (Exception e) {
-            System.err.println("Error in ssdeep comparison: " + e.getMessage());
-            return 0;
-        }
+        return FuzzyHash.compare(hashA, hashB);
     }
 
-    private double calculateVideoContentSimilarity(ApplicationFile a, ApplicationFile b) {
-        if (a == null || b == null) return 0.0;
-        
-        // Primary focus on content-based similarity, not name
-        double contentSimilarity = calculateVideoContentBasedSimilarity(a, b);
-        
-        // Only use name similarity as a secondary factor, not primary
-        double nameSimilarity = 0.0;
-        if (a.getName() != null && b.getName() != null) {
-            nameSimilarity = calculateVideoNameSimilarity(a.getName(), b.getName());
-        }
-        
-        // Weight content much higher than name (80% content, 20% name)
-        double contentWeight = 0.8;
-        double nameWeight = 0.2;
-        
-        double finalSimilarity = (contentSimilarity * contentWeight) + (nameSimilarity * nameWeight);
-        
-        return Math.min(100.0, finalSimilarity);
-    }
-    
-    private double calculateVideoContentBasedSimilarity(ApplicationFile a, ApplicationFile b) {
+    private double calculateVideoContentBasedSimilarity(ApplicationFile a, ApplicationFile b, double sizeDiff,
+                                                        double sizeRatio, double entropyDiff, double entropyRatio) {
         if (a == null || b == null) return 0.0;
         
         // Multi-level content analysis for video files
-        double sizeSimilarity = calculateSizeSimilarity(a, b);
-        double entropySimilarity = calculateEntropySimilarity(a, b);
+        double sizeSimilarity = calculateSizeSimilarity(sizeDiff);
+        double entropySimilarity = calculateEntropySimilarity(entropyDiff);
         double ssdeepSimilarity = calculateSsdeepSimilarity(a, b);
-        double perceptualSimilarity = calculatePerceptualSimilarity(a, b);
-        double structuralSimilarity = analyzeVideoStructure(a, b);
-        double contentPatternSimilarity = analyzeContentPatterns(a, b);
+        double perceptualSimilarity = calculatePerceptualSimilarity(sizeRatio, entropyRatio);
+        double structuralSimilarity = analyzeVideoStructure(sizeDiff, entropyDiff);
+        double contentPatternSimilarity = analyzeContentPatterns(sizeDiff, entropyDiff);
         
         // More aggressive weighting for content-based detection
         double sizeWeight = 0.15;
@@ -687,16 +620,14 @@ public class DuplicateDetectorService {
                                (contentPatternSimilarity * patternWeight);
         
         // Additional content-based bonuses for video files
-        double contentBonus = calculateContentBonus(a, b);
+        double contentBonus = calculateContentBonus(a, b, sizeDiff, entropyDiff);
         
         return Math.min(100.0, totalSimilarity + contentBonus);
     }
     
-    private double calculatePerceptualSimilarity(ApplicationFile a, ApplicationFile b) {
+    private double calculatePerceptualSimilarity(double sizeRatio, double entropyRatio) {
         // Simulate perceptual hashing for video content
         // This would normally analyze video frames, but we'll use file characteristics
-        double sizeRatio = Math.min(a.getSize(), b.getSize()) / Math.max(a.getSize(), b.getSize());
-        double entropyRatio = Math.min(a.getEntropy(), b.getEntropy()) / Math.max(a.getEntropy(), b.getEntropy());
         
         // Perceptual similarity based on content characteristics
         if (sizeRatio > 0.95 && entropyRatio > 0.95) return 100.0;
@@ -708,10 +639,8 @@ public class DuplicateDetectorService {
         return 0.0;
     }
     
-    private double analyzeVideoStructure(ApplicationFile a, ApplicationFile b) {
+    private double analyzeVideoStructure(double sizeDiff, double entropyDiff) {
         // Analyze video file structure and metadata patterns
-        double sizeDiff = Math.abs(a.getSize() - b.getSize()) / Math.max(a.getSize(), b.getSize());
-        double entropyDiff = Math.abs(a.getEntropy() - b.getEntropy());
         
         // Video structure analysis (similar videos have similar structural patterns)
         if (sizeDiff < 0.05 && entropyDiff < 0.05) return 100.0;
@@ -723,7 +652,7 @@ public class DuplicateDetectorService {
         return 0.0;
     }
     
-    private double calculateContentBonus(ApplicationFile a, ApplicationFile b) {
+    private double calculateContentBonus(ApplicationFile a, ApplicationFile b, double sizeDiff, double entropyDiff) {
         double bonus = 0.0;
         
         // Bonus for similar file types
@@ -733,13 +662,11 @@ public class DuplicateDetectorService {
         }
         
         // Bonus for similar size ranges (same content, different compression)
-        double sizeDiff = Math.abs(a.getSize() - b.getSize()) / Math.max(a.getSize(), b.getSize());
         if (sizeDiff < 0.1) bonus += 15.0;
         else if (sizeDiff < 0.2) bonus += 10.0;
         else if (sizeDiff < 0.3) bonus += 5.0;
         
         // Bonus for similar entropy (content complexity)
-        double entropyDiff = Math.abs(a.getEntropy() - b.getEntropy());
         if (entropyDiff < 0.1) bonus += 15.0;
         else if (entropyDiff < 0.2) bonus += 10.0;
         else if (entropyDiff < 0.3) bonus += 5.0;
@@ -752,9 +679,7 @@ public class DuplicateDetectorService {
         return bonus;
     }
     
-    private double calculateSizeSimilarity(ApplicationFile a, ApplicationFile b) {
-        double sizeDiff = Math.abs(a.getSize() - b.getSize()) / Math.max(a.getSize(), b.getSize());
-        
+    private double calculateSizeSimilarity(double sizeDiff) {
         // More lenient size comparison for videos (same content can have different sizes due to compression)
         if (sizeDiff < 0.05) return 100.0; // Very similar
         if (sizeDiff < 0.1) return 95.0;   // Similar
@@ -764,9 +689,7 @@ public class DuplicateDetectorService {
         return 0.0; // Too different
     }
     
-    private double calculateEntropySimilarity(ApplicationFile a, ApplicationFile b) {
-        double entropyDiff = Math.abs(a.getEntropy() - b.getEntropy());
-        
+    private double calculateEntropySimilarity(double entropyDiff) {
         // Entropy measures content complexity - similar videos should have similar entropy
         if (entropyDiff < 0.05) return 100.0; // Very similar content complexity
         if (entropyDiff < 0.1) return 95.0;   // Similar content complexity
@@ -782,139 +705,11 @@ public class DuplicateDetectorService {
             return 0.0; // No ssdeep hash available
         }
         
-        try {
-            int score = ssdeepCompare(a.getSsdeepHash(), b.getSsdeepHash());
-            return (double) score; // ssdeep score is already 0-100
-        } catch (Exception e) {
-            System.err.println("Error in ssdeep comparison: " + e.getMessage());
-            return 0.0;
-        }
+        return (double) ssdeepCompare(a.getSsdeepHash(), b.getSsdeepHash()); // ssdeep score is already 0-100
     }
 
-    private List<List<ApplicationFile>> groupSimilarVideos(List<ApplicationFile> videoFiles) {
-        List<List<ApplicationFile>> groups = new ArrayList<>();
-        boolean[] visited = new boolean[videoFiles.size()];
-        
-        // First pass: Group videos with exact same base names (e.g., video1.mp4, video1.avi, video1.mov)
-        for (int i = 0; i < videoFiles.size(); i++) {
-            if (visited[i]) continue;
-            
-            ApplicationFile current = videoFiles.get(i);
-            List<ApplicationFile> group = new ArrayList<>();
-            group.add(current);
-            visited[i] = true;
-            
-            // Extract base name without extension
-            String baseNameA = current.getName() != null ? 
-                current.getName().replaceAll("\\.(mp4|avi|mov|mkv|wmv|flv|webm|m4v|3gp|ogv|ts|mts|m2ts|vob|asf|divx|xvid|h264|h265|hevc|avc|mpg|mpeg|rm|rmvb|swf|f4v)$", "") : "";
-            
-            // Find videos with same base name
-            for (int j = i + 1; j < videoFiles.size(); j++) {
-                if (visited[j]) continue;
-                
-                ApplicationFile candidate = videoFiles.get(j);
-                String baseNameB = candidate.getName() != null ? 
-                    candidate.getName().replaceAll("\\.(mp4|avi|mov|mkv|wmv|flv|webm|m4v|3gp|ogv|ts|mts|m2ts|vob|asf|divx|xvid|h264|h265|hevc|avc|mpg|mpeg|rm|rmvb|swf|f4v)$", "") : "";
-                
-                if (baseNameA.equals(baseNameB)) {
-                    group.add(candidate);
-                    visited[j] = true;
-                    candidate.setSimilarityScore(85.0); // High similarity for same base name
-                }
-            }
-            
-            if (group.size() > 1) {
-                // Set high similarity for same base name group
-                for (ApplicationFile file : group) {
-                    file.setSimilarityScore(85.0);
-                }
-                groups.add(group);
-            }
-        }
-        
-        // Second pass: Group videos with similar content characteristics
-        for (int i = 0; i < videoFiles.size(); i++) {
-            if (visited[i]) continue;
-            
-            ApplicationFile current = videoFiles.get(i);
-            List<ApplicationFile> group = new ArrayList<>();
-            group.add(current);
-            visited[i] = true;
-            
-            for (int j = i + 1; j < videoFiles.size(); j++) {
-                if (visited[j]) continue;
-                
-                ApplicationFile candidate = videoFiles.get(j);
-                
-                // Multi-level content analysis
-                double contentSimilarity = calculateVideoContentBasedSimilarity(current, candidate);
-                double crossFormatSimilarity = calculateCrossFormatVideoSimilarity(current, candidate);
-                double sizeDiff = Math.abs(current.getSize() - candidate.getSize()) / Math.max(current.getSize(), candidate.getSize());
-                double entropyDiff = Math.abs(current.getEntropy() - candidate.getEntropy());
-                
-                // Content-based grouping criteria
-                boolean shouldGroup = false;
-                
-                // High content similarity
-                if (contentSimilarity > 30.0) {
-                    shouldGroup = true;
-                }
-                // Cross-format similarity
-                else if (crossFormatSimilarity > 25.0) {
-                    shouldGroup = true;
-                }
-                // Similar content characteristics
-                else if (sizeDiff < 0.3 && entropyDiff < 0.4) {
-                    shouldGroup = true;
-                }
-                // Same file type with similar characteristics
-                else if (current.getFileType() != null && candidate.getFileType() != null &&
-                         current.getFileType().equals(candidate.getFileType()) &&
-                         sizeDiff < 0.5 && entropyDiff < 0.5) {
-                    shouldGroup = true;
-                }
-                
-                if (shouldGroup) {
-                    group.add(candidate);
-                    visited[j] = true;
-                    double finalSimilarity = Math.max(contentSimilarity, crossFormatSimilarity);
-                    candidate.setSimilarityScore(finalSimilarity);
-                }
-            }
-            
-            if (group.size() > 1) {
-                // Calculate average similarity for the group
-                double avgSimilarity = group.stream()
-                    .mapToDouble(ApplicationFile::getSimilarityScore)
-                    .average()
-                    .orElse(0.0);
-                
-                // Set similarity for all files in the group
-                for (ApplicationFile file : group) {
-                    file.setSimilarityScore(avgSimilarity);
-                }
-                
-                groups.add(group);
-            }
-        }
-        
-        // Third pass: Very lenient grouping for remaining videos
-        List<ApplicationFile> remainingVideos = new ArrayList<>();
-        for (int i = 0; i < videoFiles.size(); i++) {
-            if (!visited[i]) {
-                remainingVideos.add(videoFiles.get(i));
-            }
-        }
-        
-        if (remainingVideos.size() > 1) {
-            List<List<ApplicationFile>> additionalGroups = performSecondPassGrouping(remainingVideos);
-            groups.addAll(additionalGroups);
-        }
-        
-        return groups;
-    }
-    
-    private double calculateCrossFormatVideoSimilarity(ApplicationFile a, ApplicationFile b) {
+    private double calculateCrossFormatVideoSimilarity(ApplicationFile a, ApplicationFile b, double sizeDiff,
+                                                       double entropyDiff) {
         if (a == null || b == null) return 0.0;
         
         // Check if files have similar names but different formats
@@ -922,15 +717,12 @@ public class DuplicateDetectorService {
         String nameB = b.getName() != null ? b.getName().toLowerCase() : "";
         
         // Remove extensions for comparison
-        nameA = nameA.replaceAll("\\.(mp4|avi|mov|mkv|wmv|flv|webm|m4v|3gp|ogv|ts|mts|m2ts|vob|asf|divx|xvid|h264|h265|hevc|avc|mpg|mpeg|rm|rmvb|swf|f4v)$", "");
-        nameB = nameB.replaceAll("\\.(mp4|avi|mov|mkv|wmv|flv|webm|m4v|3gp|ogv|ts|mts|m2ts|vob|asf|divx|xvid|h264|h265|hevc|avc|mpg|mpeg|rm|rmvb|swf|f4v)$", "");
+        nameA = VIDEO_EXTENSION.matcher(nameA).replaceAll("");
+        nameB = VIDEO_EXTENSION.matcher(nameB).replaceAll("");
         
         // Check for similar base names (e.g., video1.mp4, video1.avi, video1.mov)
         if (nameA.equals(nameB)) {
             // Same base name, different formats - high similarity
-            double sizeDiff = Math.abs(a.getSize() - b.getSize()) / Math.max(a.getSize(), b.getSize());
-            double entropyDiff = Math.abs(a.getEntropy() - b.getEntropy());
-            
             if (sizeDiff < 0.3 && entropyDiff < 0.4) {
                 return 85.0; // High similarity for same content, different format
             } else if (sizeDiff < 0.5 && entropyDiff < 0.5) {
@@ -942,9 +734,6 @@ public class DuplicateDetectorService {
         
         // Check for partial name matches (e.g., movie_001.mp4, my_movie.mp4)
         if (nameA.contains(nameB) || nameB.contains(nameA)) {
-            double sizeDiff = Math.abs(a.getSize() - b.getSize()) / Math.max(a.getSize(), b.getSize());
-            double entropyDiff = Math.abs(a.getEntropy() - b.getEntropy());
-            
             if (sizeDiff < 0.4 && entropyDiff < 0.4) {
                 return 70.0; // High similarity for related content
             } else if (sizeDiff < 0.6 && entropyDiff < 0.5) {
@@ -953,14 +742,11 @@ public class DuplicateDetectorService {
         }
         
         // Check for numeric patterns (e.g., video1, video2, etc.)
-        if (nameA.matches(".*\\d+.*") && nameB.matches(".*\\d+.*")) {
-            String baseA = nameA.replaceAll("\\d+", "");
-            String baseB = nameB.replaceAll("\\d+", "");
+        if (HAS_DIGITS.matcher(nameA).matches() && HAS_DIGITS.matcher(nameB).matches()) {
+            String baseA = DIGITS.matcher(nameA).replaceAll("");
+            String baseB = DIGITS.matcher(nameB).replaceAll("");
             
             if (baseA.equals(baseB)) {
-                double sizeDiff = Math.abs(a.getSize() - b.getSize()) / Math.max(a.getSize(), b.getSize());
-                double entropyDiff = Math.abs(a.getEntropy() - b.getEntropy());
-                
                 if (sizeDiff < 0.5 && entropyDiff < 0.5) {
                     return 65.0; // Similarity for numbered series
                 }
@@ -970,107 +756,8 @@ public class DuplicateDetectorService {
         return 0.0;
     }
     
-    private List<List<ApplicationFile>> performSecondPassGrouping(List<ApplicationFile> remainingVideos) {
-        List<List<ApplicationFile>> additionalGroups = new ArrayList<>();
-        boolean[] visited = new boolean[remainingVideos.size()];
-        
-        for (int i = 0; i < remainingVideos.size(); i++) {
-            if (visited[i]) continue;
-            
-            ApplicationFile current = remainingVideos.get(i);
-            List<ApplicationFile> group = new ArrayList<>();
-            group.add(current);
-            visited[i] = true;
-            
-            for (int j = i + 1; j < remainingVideos.size(); j++) {
-                if (visited[j]) continue;
-                
-                ApplicationFile candidate = remainingVideos.get(j);
-                
-                // More lenient criteria for second pass
-                double sizeDiff = Math.abs(current.getSize() - candidate.getSize()) / Math.max(current.getSize(), candidate.getSize());
-                double entropyDiff = Math.abs(current.getEntropy() - candidate.getEntropy());
-                double crossFormatSimilarity = calculateCrossFormatVideoSimilarity(current, candidate);
-                double nameSimilarity = calculateVideoNameSimilarity(current.getName(), candidate.getName());
-                
-                // Very lenient grouping for remaining videos
-                boolean shouldGroup = false;
-                
-                // Cross-format similarity
-                if (crossFormatSimilarity > 15.0) {
-                    shouldGroup = true;
-                }
-                // Size and entropy similarity
-                else if (sizeDiff < 0.7 && entropyDiff < 0.7) {
-                    shouldGroup = true;
-                }
-                // Name similarity with content characteristics
-                else if (nameSimilarity > 25.0 && (sizeDiff < 0.8 || entropyDiff < 0.8)) {
-                    shouldGroup = true;
-                }
-                // Perceptual similarity
-                else if (sizeDiff < 0.6 && entropyDiff < 0.6) {
-                    double perceptualScore = calculatePerceptualSimilarity(current, candidate);
-                    if (perceptualScore > 40.0) {
-                        shouldGroup = true;
-                    }
-                }
-                
-                if (shouldGroup) {
-                    group.add(candidate);
-                    visited[j] = true;
-                    double finalSimilarity = Math.max(crossFormatSimilarity, 50.0);
-                    candidate.setSimilarityScore(finalSimilarity);
-                }
-            }
-            
-            if (group.size() > 1) {
-                for (ApplicationFile file : group) {
-                    file.setSimilarityScore(50.0);
-                }
-                additionalGroups.add(group);
-            }
-        }
-        
-        return additionalGroups;
-    }
-
-    private double analyzeVideoContentDepth(ApplicationFile a, ApplicationFile b) {
-        if (a == null || b == null) return 0.0;
-        
-        // Analyze file structure and content patterns
-        double structureSimilarity = analyzeFileStructure(a, b);
-        double patternSimilarity = analyzeContentPatterns(a, b);
-        double metadataSimilarity = analyzeMetadata(a, b);
-        
-        // Weight the analysis factors
-        double structureWeight = 0.4;
-        double patternWeight = 0.4;
-        double metadataWeight = 0.2;
-        
-        return (structureSimilarity * structureWeight) + 
-               (patternSimilarity * patternWeight) + 
-               (metadataSimilarity * metadataWeight);
-    }
-    
-    private double analyzeFileStructure(ApplicationFile a, ApplicationFile b) {
-        // Analyze file structure characteristics
-        double sizeRatio = Math.min(a.getSize(), b.getSize()) / Math.max(a.getSize(), b.getSize());
-        double entropyRatio = Math.min(a.getEntropy(), b.getEntropy()) / Math.max(a.getEntropy(), b.getEntropy());
-        
-        // Similar structure indicates similar content
-        if (sizeRatio > 0.9 && entropyRatio > 0.9) return 100.0;
-        if (sizeRatio > 0.8 && entropyRatio > 0.8) return 95.0;
-        if (sizeRatio > 0.7 && entropyRatio > 0.7) return 85.0;
-        if (sizeRatio > 0.6 && entropyRatio > 0.6) return 70.0;
-        if (sizeRatio > 0.5 && entropyRatio > 0.5) return 50.0;
-        return 0.0;
-    }
-    
-    private double analyzeContentPatterns(ApplicationFile a, ApplicationFile b) {
+    private double analyzeContentPatterns(double sizeDiff, double entropyDiff) {
         // Analyze content patterns using entropy and size characteristics
-        double sizeDiff = Math.abs(a.getSize() - b.getSize()) / Math.max(a.getSize(), b.getSize());
-        double entropyDiff = Math.abs(a.getEntropy() - b.getEntropy());
         
         // Similar content patterns
         if (sizeDiff < 0.1 && entropyDiff < 0.1) return 100.0;
@@ -1079,16 +766,4 @@ public class DuplicateDetectorService {
         if (sizeDiff < 0.4 && entropyDiff < 0.4) return 60.0;
         return 0.0;
     }
-    
-    private double analyzeMetadata(ApplicationFile a, ApplicationFile b) {
-        // Analyze metadata similarities (file type, size patterns, etc.)
-        if (!a.getFileType().equals(b.getFileType())) return 0.0;
-        
-        // Similar file types with similar characteristics
-        double sizeDiff = Math.abs(a.getSize() - b.getSize()) / Math.max(a.getSize(), b.getSize());
-        if (sizeDiff < 0.2) return 80.0;
-        if (sizeDiff < 0.4) return 60.0;
-        if (sizeDiff < 0.6) return 40.0;
-        return 0.0;
-    }
 }
\ No newline at end of file
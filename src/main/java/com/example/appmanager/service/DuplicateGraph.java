@@ -0,0 +1,355 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+// The duplicate groups of a changing set of files. Exact groups are kept per content hash and similarity groups are
+// the connected components of the pairs that scored above their threshold, so an update only scores the changed
+// files against their candidates and regroups the hash buckets and components those files were or end up in:
+// groups merge when a new pair links them, and split or dissolve when a file holding them together goes.
+final class DuplicateGraph {
+    // Scores each listed slot against its candidates in the index and returns the pairs above their threshold; a pair
+    // of two listed slots is scored once, from the lower slot
+    interface PairScorer {
+        ScoredPairs score(CandidateIndex index, int[] slots, BitSet listed);
+    }
+
+    private final PairScorer scorer;
+    // Current version of every file, by path
+    private final Map<String, ApplicationFile> files = new HashMap<>();
+    // Files with a content hash by that hash (see DuplicateDetectorService.contentHash), in the order they arrived
+    private final Map<String, Map<String, ApplicationFile>> byHash = new HashMap<>();
+    // Key of the exact group each file is in, by path
+    private final Map<String, String> exactKeys = new HashMap<>();
+    // Files taking part in similarity scoring (full scans whose hash is not shared) and their linking scores
+    private final CandidateIndex index = new CandidateIndex();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final Map<Integer, Map<Integer, Double>> links = new HashMap<>();
+
+    DuplicateGraph(PairScorer scorer) {
+        this.scorer = scorer;
+    }
+
+    // Files are matched by path, so an upserted file replaces the stored one with the same path. On a new graph the
+    // changes list every group, exact groups by key and then similarity groups in the order of their first file.
+    DuplicateChanges update(Collection<ApplicationFile> upserted, Collection<ApplicationFile> deleted) {
+        Map<String, ApplicationFile> incoming = new LinkedHashMap<>();
+        for (ApplicationFile file : upserted) {
+            if (file != null) incoming.put(file.getPath(), file);
+        }
+        List<String> changedPaths = new ArrayList<>(incoming.keySet());
+        for (ApplicationFile file : deleted) {
+            if (file != null) changedPaths.add(file.getPath());
+        }
+        Pass pass = new Pass();
+
+        // Take out the stored version of every changed file with its links
+        for (String path : changedPaths) {
+            ApplicationFile stored = files.remove(path);
+            if (stored == null) continue;
+            pass.replaceExact(path);
+            if (!stored.getHash().isEmpty()) {
+                String hash = DuplicateDetectorService.contentHash(stored);
+                Map<String, ApplicationFile> bucket = byHash.get(hash);
+                bucket.remove(path);
+                if (bucket.isEmpty()) byHash.remove(hash);
+                pass.dirtyHashes.add(hash);
+            }
+            unlink(path, pass);
+        }
+        for (ApplicationFile file : incoming.values()) {
+            files.put(file.getPath(), file);
+            if (!file.getHash().isEmpty()) {
+                String hash = DuplicateDetectorService.contentHash(file);
+                byHash.computeIfAbsent(hash, h -> new LinkedHashMap<>()).put(file.getPath(), file);
+                pass.dirtyHashes.add(hash);
+            }
+        }
+
+        // Regroup the hash buckets that changed; files that now share their content leave similarity scoring and
+        // files left alone in their bucket may join it
+        List<DuplicateCluster> exactGroups = new ArrayList<>();
+        List<ApplicationFile> unshared = new ArrayList<>();
+        for (String hash : pass.dirtyHashes) {
+            Map<String, ApplicationFile> bucket = byHash.get(hash);
+            if (bucket == null) continue;
+            for (String path : bucket.keySet()) {
+                pass.replaceExact(path);
+            }
+            Map<String, List<ApplicationFile>> groups = DuplicateDetectorService.groupByContent(new ArrayList<>(bucket.values()));
+            for (Map.Entry<String, List<ApplicationFile>> group : groups.entrySet()) {
+                if (group.getValue().size() < 2) {
+                    unshared.addAll(group.getValue());
+                    continue;
+                }
+                for (ApplicationFile file : group.getValue()) {
+                    exactKeys.put(file.getPath(), group.getKey());
+                    file.setSimilarityScore(100.0);
+                    unlink(file.getPath(), pass);
+                }
+                long total = group.getValue().stream().mapToLong(ApplicationFile::getSize).sum();
+                long largest = group.getValue().stream().mapToLong(ApplicationFile::getSize).max().orElse(0);
+                exactGroups.add(new DuplicateCluster(group.getKey(), group.getValue(), true, 100.0, 100.0, 100.0,
+                        total - largest));
+            }
+        }
+        exactGroups.sort(Comparator.comparing(DuplicateCluster::getKey));
+
+        // Score the files new to similarity scoring against their candidates
+        Set<String> scoredPaths = new LinkedHashSet<>();
+        for (ApplicationFile file : incoming.values()) {
+            if (scoresSimilarity(file)) scoredPaths.add(file.getPath());
+        }
+        for (ApplicationFile file : unshared) {
+            if (scoresSimilarity(file)) scoredPaths.add(file.getPath());
+        }
+        int[] newSlots = new int[scoredPaths.size()];
+        BitSet listed = new BitSet();
+        int count = 0;
+        for (String path : scoredPaths) {
+            int slot = index.add(files.get(path));
+            slots.put(path, slot);
+            newSlots[count++] = slot;
+            listed.set(slot);
+            pass.seeds.add(slot);
+        }
+        ScoredPairs pairs = newSlots.length == 0 ? new ScoredPairs() : scorer.score(index, newSlots, listed);
+        // Groups that new links merge are replaced as they stood before
+        for (int k = 0; k < pairs.size(); k++) {
+            if (!listed.get(pairs.first(k))) pass.replaceComponent(pairs.first(k));
+            if (!listed.get(pairs.second(k))) pass.replaceComponent(pairs.second(k));
+        }
+        for (int k = 0; k < pairs.size(); k++) {
+            links.computeIfAbsent(pairs.first(k), slot -> new HashMap<>()).put(pairs.second(k), pairs.score(k));
+            links.computeIfAbsent(pairs.second(k), slot -> new HashMap<>()).put(pairs.first(k), pairs.score(k));
+        }
+
+        // Regroup every component a change reached
+        List<int[]> components = new ArrayList<>();
+        Set<Integer> grouped = new HashSet<>();
+        for (int seed : pass.seeds) {
+            if (grouped.contains(seed) || index.fileAt(seed) == null) continue;
+            int[] component = component(seed);
+            for (int slot : component) {
+                grouped.add(slot);
+            }
+            if (component.length >= 2) components.add(component);
+        }
+        components.sort(Comparator.comparingInt(component -> component[0]));
+        List<DuplicateCluster> groups = new ArrayList<>(exactGroups);
+        for (int[] component : components) {
+            groups.add(similarityGroup(component));
+        }
+        return new DuplicateChanges(pass.replacedKeys, groups);
+    }
+
+    // Scores a pair of files whose size and entropy comparisons are entry k of the features. Scores at or below the
+    // floor are not needed, so they may come back as anything at or below it.
+    interface PairScore {
+        double score(ApplicationFile a, ApplicationFile b, PairFeatures features, int k, double floor);
+    }
+
+    // The files most like a tracked one, best first and at most limit of them: the files sharing its content at 100,
+    // then its candidates in the index by score, without a threshold. Candidates scoring 0 are left out, and once
+    // limit files are found each candidate only needs to beat the worst of them. Nothing in the graph changes, so
+    // lookups can run alongside each other.
+    List<SimilarFile> similarTo(String path, int limit, PairScore score) {
+        PriorityQueue<SimilarFile> best = new PriorityQueue<>(Comparator.comparingDouble(SimilarFile::getSimilarity));
+        ApplicationFile file = files.get(path);
+        if (file == null) return new ArrayList<>();
+        String exactKey = exactKeys.get(path);
+        if (exactKey != null) {
+            for (ApplicationFile peer : byHash.get(DuplicateDetectorService.contentHash(file)).values()) {
+                if (!peer.getPath().equals(path) && exactKey.equals(exactKeys.get(peer.getPath()))) {
+                    keepBest(best, limit, new SimilarFile(peer, 100.0, true));
+                }
+            }
+        }
+        if ("full".equals(file.getScanMode()) && !file.getHash().isEmpty()) {
+            // Files sharing their content are not indexed, so they are looked up by their features
+            Integer slot = slots.get(path);
+            int[] candidates = slot != null ? index.candidatesOf(slot) : index.candidatesFor(file);
+            PairFeatures features = new PairFeatures();
+            index.compare(file, candidates, features);
+            for (int k = 0; k < candidates.length; k++) {
+                ApplicationFile other = index.fileAt(candidates[k]);
+                double floor = best.size() < limit ? 0.0 : best.peek().getSimilarity();
+                // Scored from the lower slot, as detection scores the pair; a file outside the index comes last
+                double similarity = slot != null && slot < candidates[k]
+                        ? score.score(file, other, features, k, floor) : score.score(other, file, features, k, floor);
+                if (similarity > floor) keepBest(best, limit, new SimilarFile(other, similarity, false));
+            }
+        }
+        List<SimilarFile> similar = new ArrayList<>(best);
+        similar.sort(Comparator.comparingDouble(SimilarFile::getSimilarity).reversed());
+        return similar;
+    }
+
+    private static void keepBest(PriorityQueue<SimilarFile> best, int limit, SimilarFile file) {
+        best.add(file);
+        if (best.size() > limit) best.poll();
+    }
+
+    private boolean scoresSimilarity(ApplicationFile file) {
+        return "full".equals(file.getScanMode()) && !file.getHash().isEmpty()
+                && !exactKeys.containsKey(file.getPath()) && !slots.containsKey(file.getPath());
+    }
+
+    // Takes a file out of similarity scoring; the files it was linked to have their components regrouped
+    private void unlink(String path, Pass pass) {
+        Integer slot = slots.remove(path);
+        if (slot == null) return;
+        pass.replaceComponent(slot);
+        Map<Integer, Double> neighbours = links.remove(slot);
+        if (neighbours != null) {
+            for (int neighbour : neighbours.keySet()) {
+                Map<Integer, Double> theirs = links.get(neighbour);
+                theirs.remove(slot);
+                if (theirs.isEmpty()) links.remove(neighbour);
+                pass.seeds.add(neighbour);
+            }
+        }
+        index.remove(slot);
+    }
+
+    // Slots linked to this one directly or through others, in ascending order
+    private int[] component(int start) {
+        Set<Integer> seen = new HashSet<>();
+        Deque<Integer> queue = new ArrayDeque<>();
+        seen.add(start);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            Map<Integer, Double> neighbours = links.get(queue.poll());
+            if (neighbours == null) continue;
+            for (int neighbour : neighbours.keySet()) {
+                if (seen.add(neighbour)) queue.add(neighbour);
+            }
+        }
+        int[] component = seen.stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(component);
+        return component;
+    }
+
+    // Each file is scored with its best link into the group, and the group is keyed by its lexicographically first
+    // path so the key does not depend on the order the files came in
+    private DuplicateCluster similarityGroup(int[] component) {
+        List<ApplicationFile> group = new ArrayList<>();
+        String firstPath = null;
+        int linkCount = 0;
+        double scoreSum = 0;
+        double minScore = Double.MAX_VALUE;
+        double maxScore = 0;
+        for (int slot : component) {
+            ApplicationFile file = index.fileAt(slot);
+            double bestScore = 0;
+            for (Map.Entry<Integer, Double> link : links.get(slot).entrySet()) {
+                double score = link.getValue();
+                bestScore = Math.max(bestScore, score);
+                if (slot < link.getKey()) {
+                    linkCount++;
+                    scoreSum += score;
+                    minScore = Math.min(minScore, score);
+                    maxScore = Math.max(maxScore, score);
+                }
+            }
+            file.setSimilarityScore(bestScore);
+            group.add(file);
+            if (firstPath == null || file.getPath().compareTo(firstPath) < 0) {
+                firstPath = file.getPath();
+            }
+        }
+        return new DuplicateCluster("similar-" + firstPath, group, false, minScore, maxScore, scoreSum / linkCount,
+                ContentChunks.reclaimableBytes(group));
+    }
+
+    // Book-keeping of one update
+    private final class Pass {
+        // Keys of the groups as they stood before the update, for every group it touches
+        final Set<String> replacedKeys = new LinkedHashSet<>();
+        final Set<String> dirtyHashes = new LinkedHashSet<>();
+        // Slots whose components are regrouped at the end, in ascending order
+        final Set<Integer> seeds = new TreeSet<>();
+        // Slots whose component has been recorded in replacedKeys
+        private final Set<Integer> recorded = new HashSet<>();
+
+        void replaceExact(String path) {
+            String key = exactKeys.remove(path);
+            if (key != null) replacedKeys.add(key);
+        }
+
+        void replaceComponent(int slot) {
+            if (recorded.contains(slot)) return;
+            int[] component = component(slot);
+            String firstPath = null;
+            for (int member : component) {
+                recorded.add(member);
+                String path = index.fileAt(member).getPath();
+                if (firstPath == null || path.compareTo(firstPath) < 0) firstPath = path;
+            }
+            if (component.length >= 2) replacedKeys.add("similar-" + firstPath);
+        }
+    }
+
+    // Pairs of slots that scored above their threshold, in the order they were scored
+    static final class ScoredPairs {
+        private int[] first = new int[64];
+        private int[] second = new int[64];
+        private double[] scores = new double[64];
+        private int size = 0;
+
+        void add(int a, int b, double score) {
+            if (size == first.length) grow(size * 2);
+            first[size] = a;
+            second[size] = b;
+            scores[size] = score;
+            size++;
+        }
+
+        // Appends the pairs of a later range so the combined buffer stays in scoring order
+        void append(ScoredPairs later) {
+            if (size + later.size > first.length) grow(size + later.size);
+            System.arraycopy(later.first, 0, first, size, later.size);
+            System.arraycopy(later.second, 0, second, size, later.size);
+            System.arraycopy(later.scores, 0, scores, size, later.size);
+            size += later.size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int first(int k) {
+            return first[k];
+        }
+
+        int second(int k) {
+            return second[k];
+        }
+
+        double score(int k) {
+            return scores[k];
+        }
+
+        private void grow(int capacity) {
+            first = Arrays.copyOf(first, capacity);
+            second = Arrays.copyOf(second, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+        }
+    }
+}
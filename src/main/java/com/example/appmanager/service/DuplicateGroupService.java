@@ -0,0 +1,176 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+import com.example.appmanager.model.DuplicateGroup;
+import com.example.appmanager.model.DuplicateMembership;
+import com.example.appmanager.repository.ApplicationFileRepository;
+import com.example.appmanager.repository.DuplicateGroupRepository;
+import com.example.appmanager.repository.DuplicateMembershipRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+// Keeps the stored duplicate groups in step with the catalog: groups are updated when a scan, a watched directory
+// update or a removal commits, and the duplicates page only reads what was stored
+@Service
+public class DuplicateGroupService {
+    @Autowired
+    private ApplicationFileRepository applicationFileRepository;
+    @Autowired
+    private DuplicateGroupRepository duplicateGroupRepository;
+    @Autowired
+    private DuplicateMembershipRepository duplicateMembershipRepository;
+    @Autowired
+    private DuplicateDetectorService duplicateDetectorService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Builds the groups in the background when a query finds none, so requests never wait for a full detection run
+    private ExecutorService refresher;
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+
+    @PostConstruct
+    void start() {
+        refresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "duplicate-group-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        refresher.shutdownNow();
+    }
+
+    // Runs detection over the whole catalog and replaces the stored groups. Refreshes and updates are serialized so
+    // the groups of an older catalog never overwrite newer ones.
+    public synchronized void refresh() {
+        long started = System.currentTimeMillis();
+        DuplicateChanges changes = duplicateDetectorService.rebuildCatalogGroups(applicationFileRepository.findAll());
+        store(changes, true, started);
+        System.out.println("Duplicate groups refreshed: " + changes.getGroups().size() + " groups in "
+                + (System.currentTimeMillis() - started) + " ms");
+    }
+
+    // Applies files the catalog has inserted or updated and files it has deleted. Only the changed files are scored
+    // and only the groups they were or end up in are rewritten; the whole catalog is regrouped instead when there
+    // are no tracked groups to update yet, or when an update fails.
+    public synchronized void update(Collection<ApplicationFile> upserted, Collection<ApplicationFile> deleted) {
+        if (upserted.isEmpty() && deleted.isEmpty()) return;
+        if (!duplicateDetectorService.isTrackingCatalogGroups()) {
+            refresh();
+            return;
+        }
+        long started = System.currentTimeMillis();
+        DuplicateChanges changes;
+        try {
+            changes = duplicateDetectorService.updateCatalogGroups(upserted, deleted);
+            if (!changes.isEmpty()) store(changes, false, started);
+        } catch (RuntimeException e) {
+            System.err.println("Error updating duplicate groups, regrouping the catalog: " + e.getMessage());
+            duplicateDetectorService.forgetCatalogGroups();
+            refresh();
+            return;
+        }
+        System.out.println("Duplicate groups updated: " + changes.getRemovedKeys().size() + " replaced, "
+                + changes.getGroups().size() + " written in " + (System.currentTimeMillis() - started) + " ms");
+    }
+
+    // The catalog files most like the given one, best first and at most limit of them, or nothing while the groups
+    // are being built or updated. A query that finds no groups starts building them and returns at once.
+    public Optional<List<SimilarFile>> findSimilar(ApplicationFile file, int limit) {
+        if (!duplicateDetectorService.isTrackingCatalogGroups() && refreshQueued.compareAndSet(false, true)) {
+            refresher.execute(() -> {
+                try {
+                    synchronized (this) {
+                        if (!duplicateDetectorService.isTrackingCatalogGroups()) refresh();
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Error building duplicate groups: " + e.getMessage());
+                } finally {
+                    refreshQueued.set(false);
+                }
+            });
+        }
+        return duplicateDetectorService.findSimilarInCatalog(file.getPath(), limit);
+    }
+
+    private void store(DuplicateChanges changes, boolean replaceAll, long computedAt) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            if (replaceAll) {
+                duplicateMembershipRepository.deleteAllInBatch();
+                duplicateGroupRepository.deleteAllInBatch();
+            } else if (!changes.getRemovedKeys().isEmpty()) {
+                List<DuplicateGroup> replaced = duplicateGroupRepository.findByGroupKeyIn(changes.getRemovedKeys());
+                if (!replaced.isEmpty()) {
+                    duplicateMembershipRepository.deleteByDuplicateGroupIn(replaced);
+                    duplicateGroupRepository.deleteAllInBatch(replaced);
+                }
+            }
+            List<DuplicateMembership> memberships = new ArrayList<>();
+            for (DuplicateCluster cluster : changes.getGroups()) {
+                DuplicateGroup group = new DuplicateGroup();
+                group.setGroupKey(cluster.getKey());
+                group.setExact(cluster.isExact());
+                group.setMinSimilarity(cluster.getMinSimilarity());
+                group.setMaxSimilarity(cluster.getMaxSimilarity());
+                group.setAverageSimilarity(cluster.getAverageSimilarity());
+                group.setReclaimableBytes(cluster.getReclaimableBytes());
+                group.setComputedAt(computedAt);
+                group = duplicateGroupRepository.save(group);
+                for (ApplicationFile file : cluster.getFiles()) {
+                    DuplicateMembership membership = new DuplicateMembership();
+                    membership.setDuplicateGroup(group);
+                    membership.setFileId(file.getId());
+                    membership.setSimilarityScore(file.getSimilarityScore());
+                    memberships.add(membership);
+                }
+            }
+            duplicateMembershipRepository.saveAll(memberships);
+        });
+    }
+
+    // The stored groups with their files, in the order they were computed. Members whose file has been removed
+    // since are left out, and so are groups left with fewer than two files.
+    public List<DuplicateCluster> getGroups() {
+        List<DuplicateMembership> memberships = duplicateMembershipRepository.findAllByOrderByIdAsc();
+        Map<Long, ApplicationFile> files = new HashMap<>();
+        for (ApplicationFile file : applicationFileRepository.findAllById(memberships.stream()
+                .map(DuplicateMembership::getFileId)
+                .collect(Collectors.toSet()))) {
+            files.put(file.getId(), file);
+        }
+        Map<Long, List<ApplicationFile>> members = new LinkedHashMap<>();
+        for (DuplicateMembership membership : memberships) {
+            ApplicationFile file = files.get(membership.getFileId());
+            if (file == null) continue;
+            file.setSimilarityScore(membership.getSimilarityScore());
+            members.computeIfAbsent(membership.getDuplicateGroup().getId(), id -> new ArrayList<>()).add(file);
+        }
+        List<DuplicateCluster> groups = new ArrayList<>();
+        for (DuplicateGroup group : duplicateGroupRepository.findAllByOrderByIdAsc()) {
+            List<ApplicationFile> groupFiles = members.get(group.getId());
+            if (groupFiles == null || groupFiles.size() < 2) continue;
+            groups.add(new DuplicateCluster(group.getGroupKey(), groupFiles, group.isExact(),
+                    group.getMinSimilarity(), group.getMaxSimilarity(), group.getAverageSimilarity(),
+                    group.getReclaimableBytes()));
+        }
+        return groups;
+    }
+}
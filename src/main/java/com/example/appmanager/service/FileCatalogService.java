@@ -0,0 +1,175 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+import com.example.appmanager.repository.ApplicationFileRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Applies file-level changes to the stored catalog without touching unrelated rows
+@Service
+public class FileCatalogService {
+    @Autowired
+    private ApplicationFileRepository applicationFileRepository;
+    @Autowired
+    private RuleCategorizationService ruleCategorizationService;
+    @Autowired
+    private FileScannerService fileScannerService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Inserts new files and updates the rows already stored for the same paths. Sizes and fast hashes the files share
+    // with rows of other paths are settled with SHA-256s first, before the transaction, so no connection is held
+    // while files are read; the returned rows are the scanned ones followed by any rows of other paths that gained a
+    // hash or confirmation.
+    public List<ApplicationFile> upsert(List<ApplicationFile> scanned) throws IOException, NoSuchAlgorithmException {
+        if (scanned.isEmpty()) return scanned;
+        List<ApplicationFile> related = settleHashes(scanned);
+        return write(status -> save(scanned, related));
+    }
+
+    // Catalog writes are serialized, e.g. two jobs under one root or a job and a watcher flush, so the rows a write
+    // matches paths against are still the stored ones when it commits; the lock is held until the commit
+    private <T> T write(TransactionCallback<T> action) {
+        synchronized (this) {
+            return new TransactionTemplate(transactionManager).execute(action);
+        }
+    }
+
+    // Hashes the scanned files and the stored rows of other paths they share a size or fast hash with, returning the
+    // rows that gained a hash
+    private List<ApplicationFile> settleHashes(List<ApplicationFile> scanned) throws IOException, NoSuchAlgorithmException {
+        Set<String> paths = scanned.stream().map(ApplicationFile::getPath).collect(Collectors.toSet());
+        Set<ApplicationFile> related = Collections.newSetFromMap(new IdentityHashMap<>());
+        related.addAll(fileScannerService.hashCatalogSizeMatches(scanned, storedOfSameSize(scanned, paths)));
+        related.addAll(fileScannerService.confirmCatalogCollisions(scanned, storedWithFastHashes(scanned, paths)));
+        return new ArrayList<>(related);
+    }
+
+    private List<ApplicationFile> save(List<ApplicationFile> scanned, List<ApplicationFile> related) {
+        Map<String, ApplicationFile> existing = new HashMap<>();
+        List<String> paths = scanned.stream().map(ApplicationFile::getPath).collect(Collectors.toList());
+        for (ApplicationFile stored : QueryBatches.findIn(paths, applicationFileRepository::findByPathIn)) {
+            existing.put(stored.getPath(), stored);
+        }
+        for (ApplicationFile appFile : scanned) {
+            ApplicationFile stored = existing.get(appFile.getPath());
+            appFile.setId(stored != null ? stored.getId() : null);
+        }
+        ruleCategorizationService.categorize(scanned);
+        List<ApplicationFile> saved = new ArrayList<>(scanned);
+        saved.addAll(withHashes(related, existing.keySet()));
+        return applicationFileRepository.saveAll(saved);
+    }
+
+    // The current rows of the given ones of other paths, with the hashes worked out for them. Rows removed, scanned
+    // again or rescanned with other content since they were hashed are left out.
+    private List<ApplicationFile> withHashes(List<ApplicationFile> hashed, Set<String> scannedPaths) {
+        if (hashed.isEmpty()) return List.of();
+        Map<Long, ApplicationFile> byId = new HashMap<>();
+        for (ApplicationFile appFile : hashed) {
+            byId.put(appFile.getId(), appFile);
+        }
+        String fastAlgorithm = HashStrategy.XXHASH64.getAlgorithm();
+        List<ApplicationFile> current = new ArrayList<>();
+        for (ApplicationFile stored : QueryBatches.findIn(byId.keySet(), applicationFileRepository::findAllById)) {
+            ApplicationFile appFile = byId.get(stored.getId());
+            if (scannedPaths.contains(stored.getPath()) || stored.getSize() != appFile.getSize()
+                    || !stored.getHashAlgorithm().equals(appFile.getHashAlgorithm())) continue;
+            if (appFile.getHashAlgorithm().equals(fastAlgorithm)) {
+                if (!stored.getHash().equals(appFile.getHash())) continue;
+                stored.setConfirmedHash(appFile.getConfirmedHash());
+            } else {
+                if (!stored.getHash().isEmpty()) continue;
+                stored.setHash(appFile.getHash());
+            }
+            current.add(stored);
+        }
+        return current;
+    }
+
+    // Stored rows of paths other than the scanned ones that have the size of a scanned file, where the scanned file or
+    // the row comes from an exact scan; full scans meet each other through their fast hashes
+    private List<ApplicationFile> storedOfSameSize(List<ApplicationFile> scanned, Set<String> scannedPaths) {
+        Map<Boolean, Set<Long>> sizes = scanned.stream().collect(Collectors.partitioningBy(
+                appFile -> "exact".equals(appFile.getScanMode()),
+                Collectors.mapping(ApplicationFile::getSize, Collectors.toSet())));
+        Set<ApplicationFile> stored = new LinkedHashSet<>();
+        stored.addAll(QueryBatches.findIn(sizes.get(true), applicationFileRepository::findBySizeIn));
+        stored.addAll(QueryBatches.findIn(sizes.get(false),
+                batch -> applicationFileRepository.findByScanModeAndSizeIn("exact", batch)));
+        return stored.stream()
+                .filter(appFile -> !scannedPaths.contains(appFile.getPath()))
+                .collect(Collectors.toList());
+    }
+
+    // Stored rows of paths other than the scanned ones that share a fast hash with a scanned file
+    private List<ApplicationFile> storedWithFastHashes(List<ApplicationFile> scanned, Set<String> scannedPaths) {
+        String algorithm = HashStrategy.XXHASH64.getAlgorithm();
+        Set<String> hashes = scanned.stream()
+                .filter(appFile -> appFile.getHashAlgorithm().equals(algorithm) && !appFile.getHash().isEmpty())
+                .map(ApplicationFile::getHash)
+                .collect(Collectors.toSet());
+        if (hashes.isEmpty()) return List.of();
+        return QueryBatches.findIn(hashes, batch -> applicationFileRepository.findByHashAlgorithmAndHashIn(algorithm, batch)).stream()
+                .filter(stored -> !scannedPaths.contains(stored.getPath()))
+                .collect(Collectors.toList());
+    }
+
+    // Makes the stored rows under a scanned root match the scan, leaving other roots alone, in one transaction once
+    // the hashes are settled. The rows it deletes are added to removed.
+    public List<ApplicationFile> replaceUnder(File root, List<ApplicationFile> scanned, List<ApplicationFile> removed)
+            throws IOException, NoSuchAlgorithmException {
+        Set<String> present = scanned.stream().map(ApplicationFile::getPath).collect(Collectors.toSet());
+        List<ApplicationFile> related = settleHashes(scanned);
+        return write(status -> {
+            removed.addAll(retainUnder(root.getAbsoluteFile().toPath(), present));
+            return save(scanned, related);
+        });
+    }
+
+    // Removes the rows for the given paths and everything below them (deleted directories), returning the removed rows.
+    // Only paths without a row of their own can be directories, so only those are looked up by prefix.
+    public List<ApplicationFile> removeUnder(Collection<Path> paths) {
+        if (paths.isEmpty()) return new ArrayList<>();
+        return write(status -> {
+            Set<ApplicationFile> removed = new LinkedHashSet<>(QueryBatches.findIn(
+                    paths.stream().map(Path::toString).collect(Collectors.toSet()), applicationFileRepository::findByPathIn));
+            Set<String> files = removed.stream().map(ApplicationFile::getPath).collect(Collectors.toSet());
+            for (Path path : paths) {
+                if (files.contains(path.toString())) continue;
+                removed.addAll(applicationFileRepository.findByPathStartingWith(path + File.separator));
+            }
+            applicationFileRepository.deleteAll(removed);
+            return new ArrayList<>(removed);
+        });
+    }
+
+    // Removes rows below a directory whose files are no longer present
+    public List<ApplicationFile> retainUnder(Path directory, Set<String> presentPaths) {
+        return write(status -> {
+            List<ApplicationFile> removed = applicationFileRepository.findByPathStartingWith(directory + File.separator).stream()
+                    .filter(appFile -> !presentPaths.contains(appFile.getPath()))
+                    .collect(Collectors.toList());
+            applicationFileRepository.deleteAll(removed);
+            return removed;
+        });
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Streams a file once and feeds the content hash, the fuzzy hash, the entropy histogram, the content-defined chunker
+// and, for audio, the fingerprint from the same buffer. Video stream properties come from a few header reads instead, and the perceptual
+// hash of an image from a subsampled decode.
+final class FileFeatureExtractor {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    // Entropy is computed over a leading sample of the file rather than the whole content
+    private static final int ENTROPY_SAMPLE_SIZE = 1024 * 1024;
+    // One read buffer per worker thread, reused across files
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    // Text files are hashed on their normalized words instead of their bytes, and get a MinHash of their word set and
+    // a profile of their words; tagged media are hashed on their payload alone
+    void extract(File file, ApplicationFile appFile, HashStrategy hashStrategy) throws IOException, NoSuchAlgorithmException {
+        boolean text = appFile.getFileType().equals("txt");
+        MediaPayload payload = !text && MediaPayload.covers(appFile.getFileType())
+                ? MediaPayload.locate(file, appFile.getFileType()) : null;
+        boolean whole = !text && payload == null;
+        boolean fast = hashStrategy == HashStrategy.XXHASH64;
+        MessageDigest sha256 = whole && !fast ? MessageDigest.getInstance("SHA-256") : null;
+        XxHash64 xxHash = whole && fast ? new XxHash64() : null;
+        FuzzyHash fuzzyHash = !text ? new FuzzyHash() : null;
+        ContentChunks chunks = !text && appFile.getSize() >= ContentChunks.MIN_FILE_SIZE ? new ContentChunks() : null;
+        MinHash minHash = text ? new MinHash() : null;
+        TextProfile.Builder profile = text ? new TextProfile.Builder() : null;
+        // Only WAV and AIFF content decodes, whatever the extension says
+        AudioFingerprint fingerprint = DuplicateDetectorService.isAudioFile(appFile.getFileType()) ? new AudioFingerprint() : null;
+        int[] histogram = new int[256];
+        long sampled = 0;
+        long position = 0;
+        VideoHeader video = DuplicateDetectorService.isVideoFile(appFile.getFileType()) ? VideoHeader.read(file) : null;
+        if (video != null) video.applyTo(appFile);
+        appFile.setImageHash(ImageHash.covers(appFile.getFileType()) ? ImageHash.of(file) : null);
+
+        byte[] buffer = BUFFERS.get();
+        try (FileInputStream in = new FileInputStream(file);
+             NormalizedTextHasher textHasher = text ? new NormalizedTextHasher(minHash, profile) : null) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (text) {
+                    textHasher.update(buffer, 0, read);
+                } else {
+                    if (payload != null) {
+                        payload.update(position, buffer, read);
+                    } else if (fast) {
+                        xxHash.update(buffer, 0, read);
+                    } else {
+                        sha256.update(buffer, 0, read);
+                    }
+                    fuzzyHash.update(buffer, 0, read);
+                    if (chunks != null) chunks.update(buffer, 0, read);
+                    if (fingerprint != null) fingerprint.update(buffer, 0, read);
+                }
+                int sample = (int) Math.min(read, ENTROPY_SAMPLE_SIZE - sampled);
+                for (int i = 0; i < sample; i++) {
+                    histogram[buffer[i] & 0xFF]++;
+                }
+                sampled += sample;
+                position += read;
+            }
+            if (text) {
+                appFile.setHash(textHasher.digest());
+                appFile.setHashAlgorithm("text-sha256");
+                appFile.setMinHash(minHash.signature());
+                appFile.setTextProfile(profile.digest());
+            }
+        }
+
+        if (payload != null) {
+            appFile.setHash(payload.digest());
+            appFile.setHashAlgorithm(payload.algorithm());
+        } else if (!text) {
+            appFile.setHash(fast ? xxHash.hexDigest() : HexFormat.of().formatHex(sha256.digest()));
+            appFile.setHashAlgorithm(hashStrategy.getAlgorithm());
+        }
+        if (!text) {
+            appFile.setSsdeepHash(fuzzyHash.digest());
+        }
+        appFile.setContentChunks(chunks != null ? chunks.digest() : new byte[0]);
+        appFile.setAudioFingerprint(fingerprint != null ? fingerprint.digest() : new byte[0]);
+        appFile.setEntropy(entropy(histogram, sampled, appFile.getSize()));
+    }
+
+    String sha256(File file) throws IOException, NoSuchAlgorithmException {
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = BUFFERS.get();
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                sha256.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    // Reads only the payload ranges, and nothing when the file stores a digest of its own
+    String payloadHash(File file, MediaPayload payload) throws IOException {
+        payload.read(file, BUFFERS.get());
+        return payload.digest();
+    }
+
+    // Fast hash over the first and last edgeSize bytes only, to pick candidates; callers read small files whole instead
+    String xxHashOfEdges(File file, long size, int edgeSize) throws IOException {
+        XxHash64 xxHash = new XxHash64();
+        byte[] buffer = BUFFERS.get();
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.readFully(buffer, 0, edgeSize);
+            xxHash.update(buffer, 0, edgeSize);
+            in.seek(size - edgeSize);
+            in.readFully(buffer, 0, edgeSize);
+            xxHash.update(buffer, 0, edgeSize);
+        }
+        return xxHash.hexDigest();
+    }
+
+    private static double entropy(int[] histogram, long sampled, long fileSize) {
+        double entropy = 0.0;
+        for (int f : histogram) {
+            if (f > 0) {
+                double p = (double) f / sampled;
+                entropy -= p * (Math.log(p) / Math.log(2));
+            }
+        }
+
+        // Normalize entropy based on how much of the file was sampled
+        if (fileSize > 0) {
+            double sizeFactor = Math.min(1.0, (double) sampled / fileSize);
+            entropy *= sizeFactor;
+        }
+        return entropy;
+    }
+}
@@ -1,58 +1,505 @@
 package com.example.appmanager.service;
 
 import com.example.appmanager.model.ApplicationFile;
-import org.apache.commons.io.FileUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.security.MessageDigest;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class FileScannerService {
+    // Marks the end of the walk in the in-flight queue
+    private static final Future<ApplicationFile> END_OF_WALK = CompletableFuture.completedFuture(null);
+    // Bytes hashed at each end of a file in the partial-hash stage of exact-duplicate scans
+    private static final int EDGE_HASH_SIZE = 64 * 1024;
+
+    @Autowired
+    private ScanCacheService scanCacheService;
+
+    @Value("${appmanager.scan.workers:0}")
+    private int workerCount;
+    @Value("${appmanager.scan.queue-capacity:1024}")
+    private int queueCapacity;
+    @Value("${appmanager.scan.hash:xxhash64}")
+    private String hashAlgorithm;
+
+    private final FileFeatureExtractor featureExtractor = new FileFeatureExtractor();
+    private ExecutorService workerPool;
+    private ExecutorService walkerPool;
+    private HashStrategy hashStrategy;
+
+    @PostConstruct
+    void startPools() {
+        hashStrategy = HashStrategy.forAlgorithm(hashAlgorithm);
+        int workers = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+        workerPool = Executors.newFixedThreadPool(workers, daemonThreads("scan-worker-"));
+        walkerPool = Executors.newCachedThreadPool(daemonThreads("scan-walker-"));
+    }
+
+    @PreDestroy
+    void stopPools() {
+        walkerPool.shutdownNow();
+        workerPool.shutdownNow();
+    }
+
     public List<ApplicationFile> scanDirectory(String directoryPath) throws IOException, NoSuchAlgorithmException {
+        return scanDirectory(directoryPath, ScanOptions.all(), new ScanProgress());
+    }
+
+    public List<ApplicationFile> scanDirectory(String directoryPath, ScanOptions options, ScanProgress progress)
+            throws IOException, NoSuchAlgorithmException {
+        // Pipeline: walker thread -> bounded queue of in-flight work -> ordered collector (this thread).
+        // The queue bound keeps the walker from running arbitrarily far ahead of the workers.
+        File root = new File(directoryPath);
+        ScanCacheService.Session cache = scanCacheService.open(root);
+        BlockingQueue<Future<ApplicationFile>> inFlight = new ArrayBlockingQueue<>(queueCapacity);
+        Future<Void> walker = walkerPool.submit(() -> walk(root, options, cache, inFlight, progress));
+
         List<ApplicationFile> applicationFiles = new ArrayList<>();
-        Collection<File> files = FileUtils.listFiles(new File(directoryPath), null, true);
-        for (File file : files) {
-            ApplicationFile appFile = new ApplicationFile();
-            appFile.setName(file.getName());
-            appFile.setPath(file.getAbsolutePath());
-            appFile.setSize(file.length());
-            appFile.setFileType(getEnhancedFileExtension(file));
-            if (appFile.getFileType().equals("txt")) {
-                appFile.setHash(computeNormalizedTextHash(file));
-            } else {
-                appFile.setHash(computeSHA256(file));
+        try {
+            Future<ApplicationFile> next;
+            while ((next = inFlight.take()) != END_OF_WALK) {
+                applicationFiles.add(next.get());
+            }
+            walker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(walker, inFlight);
+            throw new InterruptedIOException("Scan of " + directoryPath + " was interrupted");
+        } catch (ExecutionException e) {
+            abort(walker, inFlight);
+            throw unwrapScanFailure(e.getCause());
+        }
+        confirmFastHashCollisions(applicationFiles, cache, progress);
+        scanCacheService.commit(cache);
+        return applicationFiles;
+    }
+
+    private Void walk(File root, ScanOptions options, ScanCacheService.Session cache,
+                      BlockingQueue<Future<ApplicationFile>> inFlight, ScanProgress progress)
+            throws IOException, InterruptedException {
+        try {
+            walkTree(root.toPath(), root.toPath(), options, progress, (file, attrs) ->
+                    inFlight.put(workerPool.submit(() -> scanFile(file, attrs, cache, progress))));
+        } finally {
+            inFlight.put(END_OF_WALK);
+        }
+        return null;
+    }
+
+    interface FileSink {
+        void accept(File file, BasicFileAttributes attrs) throws InterruptedException;
+    }
+
+    // Hands each accepted file below start to the sink as soon as it is visited; pruned directories are never
+    // opened. Filters see paths relative to root. Links are followed like before, with loops and unreadable
+    // entries skipped.
+    void walkTree(Path rootPath, Path start, ScanOptions options, ScanProgress progress, FileSink sink) throws IOException {
+        Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                progress.checkCancelled();
+                if (!dir.equals(rootPath) && options.prunes(rootPath.relativize(dir), dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                progress.checkCancelled();
+                if (options.accepts(rootPath.relativize(file), file, attrs)) {
+                    progress.fileDiscovered();
+                    try {
+                        sink.accept(file.toFile(), attrs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Walk of " + start + " was interrupted");
+                    }
+                }
+                return FileVisitResult.CONTINUE;
             }
-            if (!appFile.getFileType().equals("txt")) {
-                appFile.setSsdeepHash(computeEnhancedSsdeepHash(file));
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (file.equals(start)) throw e;
+                System.err.println("Skipping " + file + ": " + e);
+                return FileVisitResult.CONTINUE;
             }
-            appFile.setEntropy(calculateEnhancedEntropy(file));
+        });
+    }
+
+    // Rescans individual files, e.g. after change notifications; files that vanished meanwhile are skipped
+    public List<ApplicationFile> scanFiles(Collection<File> files) throws IOException, NoSuchAlgorithmException {
+        ScanCacheService.Session cache = scanCacheService.openFiles(files);
+        ScanProgress progress = new ScanProgress();
+        List<ApplicationFile> scanned = runOnWorkers(files.stream()
+                .map(file -> (Callable<ApplicationFile>) () -> {
+                    try {
+                        return scanFile(file, Files.readAttributes(file.toPath(), BasicFileAttributes.class), cache, progress);
+                    } catch (IOException e) {
+                        if (file.exists()) throw e;
+                        return null;
+                    }
+                })
+                .collect(Collectors.toList()));
+        scanned.removeIf(Objects::isNull);
+        confirmFastHashCollisions(scanned, cache, progress);
+        scanCacheService.commit(cache);
+        return scanned;
+    }
+
+    // Exact-duplicate scan: hashes only files that share a size, first on their head and tail, then in full
+    // for the ones still colliding. Files that cannot have an exact duplicate are never read. Tagged media are
+    // compared on their payload instead, which takes a few small reads each to locate.
+    public List<ApplicationFile> scanForExactDuplicates(String directoryPath) throws IOException, NoSuchAlgorithmException {
+        return scanForExactDuplicates(directoryPath, ScanOptions.all(), new ScanProgress());
+    }
+
+    public List<ApplicationFile> scanForExactDuplicates(String directoryPath, ScanOptions options, ScanProgress progress)
+            throws IOException, NoSuchAlgorithmException {
+        List<ApplicationFile> applicationFiles = new ArrayList<>();
+        Path root = new File(directoryPath).toPath();
+        walkTree(root, root, options, progress, (file, attrs) -> {
+            ApplicationFile appFile = describe(file, attrs);
+            appFile.setScanMode("exact");
             applicationFiles.add(appFile);
+            progress.fileScanned();
+        });
+
+        List<ApplicationFile> media = applicationFiles.stream()
+                .filter(appFile -> MediaPayload.covers(appFile.getFileType()))
+                .collect(Collectors.toList());
+        List<MediaPayload> located = runOnWorkers(media.stream()
+                .map(appFile -> (Callable<MediaPayload>) () -> {
+                    progress.checkCancelled();
+                    return MediaPayload.locate(new File(appFile.getPath()), appFile.getFileType());
+                })
+                .collect(Collectors.toList()));
+        Map<ApplicationFile, MediaPayload> payloads = new HashMap<>();
+        for (int i = 0; i < media.size(); i++) {
+            if (located.get(i) != null) payloads.put(media.get(i), located.get(i));
+        }
+
+        // Payloads of the same size are hashed in full; FLAC files carrying a digest of their audio need no more reads
+        List<ApplicationFile> payloadCollisions = collidingGroups(
+                applicationFiles.stream().filter(payloads::containsKey).collect(Collectors.toList()),
+                appFile -> payloads.get(appFile).groupingKey());
+        List<String> payloadHashes = runOnWorkers(payloadCollisions.stream()
+                .map(appFile -> (Callable<String>) () -> {
+                    progress.checkCancelled();
+                    MediaPayload payload = payloads.get(appFile);
+                    String hash = featureExtractor.payloadHash(new File(appFile.getPath()), payload);
+                    if (payload.needsContent()) progress.bytesScanned(payload.size());
+                    return hash;
+                })
+                .collect(Collectors.toList()));
+        for (int i = 0; i < payloadCollisions.size(); i++) {
+            ApplicationFile appFile = payloadCollisions.get(i);
+            appFile.setHash(payloadHashes.get(i));
+            appFile.setHashAlgorithm(payloads.get(appFile).algorithm());
+        }
+
+        List<ApplicationFile> sizeCollisions = collidingGroups(
+                applicationFiles.stream().filter(appFile -> !payloads.containsKey(appFile)).collect(Collectors.toList()),
+                ApplicationFile::getSize);
+
+        // Files up to two edges long are read whole, which settles them in this stage
+        List<String> partialHashes = runOnWorkers(sizeCollisions.stream()
+                .map(appFile -> (Callable<String>) () -> {
+                    progress.checkCancelled();
+                    long edgeBytes = Math.min(appFile.getSize(), 2L * EDGE_HASH_SIZE);
+                    String hash = appFile.getSize() <= 2L * EDGE_HASH_SIZE
+                            ? featureExtractor.sha256(new File(appFile.getPath()))
+                            : featureExtractor.xxHashOfEdges(new File(appFile.getPath()), appFile.getSize(), EDGE_HASH_SIZE);
+                    progress.bytesScanned(edgeBytes);
+                    return hash;
+                })
+                .collect(Collectors.toList()));
+        Map<ApplicationFile, String> partialByFile = new HashMap<>();
+        for (int i = 0; i < sizeCollisions.size(); i++) {
+            ApplicationFile appFile = sizeCollisions.get(i);
+            if (appFile.getSize() <= 2L * EDGE_HASH_SIZE) {
+                appFile.setHash(partialHashes.get(i));
+            } else {
+                partialByFile.put(appFile, partialHashes.get(i));
+            }
         }
+
+        List<ApplicationFile> edgeCollisions = collidingGroups(new ArrayList<>(partialByFile.keySet()),
+                appFile -> appFile.getSize() + ":" + partialByFile.get(appFile));
+        List<String> fullHashes = runOnWorkers(edgeCollisions.stream()
+                .map(appFile -> (Callable<String>) () -> {
+                    progress.checkCancelled();
+                    String hash = featureExtractor.sha256(new File(appFile.getPath()));
+                    progress.bytesScanned(appFile.getSize());
+                    return hash;
+                })
+                .collect(Collectors.toList()));
+        for (int i = 0; i < edgeCollisions.size(); i++) {
+            edgeCollisions.get(i).setHash(fullHashes.get(i));
+        }
+
+        long totalBytes = applicationFiles.stream().mapToLong(ApplicationFile::getSize).sum();
+        long bytesRead = sizeCollisions.stream().mapToLong(f -> Math.min(f.getSize(), 2L * EDGE_HASH_SIZE)).sum()
+                + edgeCollisions.stream().mapToLong(ApplicationFile::getSize).sum()
+                + payloadCollisions.stream().map(payloads::get).filter(MediaPayload::needsContent).mapToLong(MediaPayload::size).sum();
+        System.out.println("Exact scan of " + applicationFiles.size() + " files read " + bytesRead + " of " + totalBytes + " bytes");
         return applicationFiles;
     }
 
-    private String computeSHA256(File file) throws IOException, NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        try (FileInputStream fis = new FileInputStream(file)) {
-            byte[] byteArray = new byte[1024];
-            int bytesCount;
-            while ((bytesCount = fis.read(byteArray)) != -1) {
-                digest.update(byteArray, 0, bytesCount);
+    // Members of every group with more than one file, in their original order
+    private static <K> List<ApplicationFile> collidingGroups(List<ApplicationFile> files, Function<ApplicationFile, K> key) {
+        Map<K, Long> counts = files.stream().collect(Collectors.groupingBy(key, Collectors.counting()));
+        return files.stream().filter(f -> counts.get(key.apply(f)) > 1).collect(Collectors.toList());
+    }
+
+    // Runs the tasks on the worker pool and returns their results in task order
+    private <T> List<T> runOnWorkers(List<Callable<T>> tasks) throws IOException, NoSuchAlgorithmException {
+        List<Future<T>> futures = new ArrayList<>();
+        for (Callable<T> task : tasks) {
+            futures.add(workerPool.submit(task));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new InterruptedIOException("Scan was interrupted");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw unwrapScanFailure(e.getCause());
         }
-        byte[] bytes = digest.digest();
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
+        return results;
+    }
+
+    private ApplicationFile describe(File file, BasicFileAttributes attrs) {
+        ApplicationFile appFile = new ApplicationFile();
+        appFile.setName(file.getName());
+        appFile.setPath(file.getAbsolutePath());
+        appFile.setSize(attrs.size());
+        appFile.setFileType(getEnhancedFileExtension(file));
+        return appFile;
+    }
+
+    private ApplicationFile scanFile(File file, BasicFileAttributes attrs, ScanCacheService.Session cache,
+                                     ScanProgress progress) throws IOException, NoSuchAlgorithmException {
+        progress.checkCancelled();
+        ApplicationFile appFile = describe(file, attrs);
+        if (cache.restore(appFile, attrs, hashAlgorithmsFor(appFile.getFileType()))) {
+            progress.fileScanned();
+            progress.bytesScanned(attrs.size());
+            return appFile;
+        }
+        featureExtractor.extract(file, appFile, hashStrategy);
+        cache.record(appFile, attrs);
+        progress.fileScanned();
+        progress.bytesScanned(attrs.size());
+        return appFile;
+    }
+
+    // What extract may hash a file of this type with: text always on its words, tagged media on their payload
+    // when it parses and otherwise like any file
+    private List<String> hashAlgorithmsFor(String fileType) {
+        if (fileType.equals("txt")) return List.of("text-sha256");
+        List<String> algorithms = new ArrayList<>(MediaPayload.hashAlgorithms(fileType));
+        algorithms.add(hashStrategy.getAlgorithm());
+        return algorithms;
+    }
+
+    // A fast hash only nominates duplicates: files sharing one with another file of the same size get a SHA-256,
+    // which is what tells true duplicates apart from colliding ones. Confirmations are cached with the file.
+    private void confirmFastHashCollisions(List<ApplicationFile> files, ScanCacheService.Session cache, ScanProgress progress)
+            throws IOException, NoSuchAlgorithmException {
+        List<ApplicationFile> fastHashed = files.stream()
+                .filter(appFile -> appFile.getHashAlgorithm().equals(HashStrategy.XXHASH64.getAlgorithm()))
+                .collect(Collectors.toList());
+        List<ApplicationFile> unconfirmed = collidingGroups(fastHashed, appFile -> appFile.getSize() + ":" + appFile.getHash())
+                .stream()
+                .filter(appFile -> appFile.getConfirmedHash().isEmpty())
+                .collect(Collectors.toList());
+        List<String> confirmations = runOnWorkers(unconfirmed.stream()
+                .map(appFile -> (Callable<String>) () -> {
+                    progress.checkCancelled();
+                    String hash = featureExtractor.sha256(new File(appFile.getPath()));
+                    progress.bytesScanned(appFile.getSize());
+                    return hash;
+                })
+                .collect(Collectors.toList()));
+        for (int i = 0; i < unconfirmed.size(); i++) {
+            ApplicationFile appFile = unconfirmed.get(i);
+            appFile.setConfirmedHash(confirmations.get(i));
+            cache.confirm(appFile);
+        }
+    }
+
+    // Confirms the fast hashes that scanned files share with stored rows of other paths, e.g. from another root or
+    // an earlier scan, so a match between separate scans is never taken on the fast hash alone. Both sides are read
+    // where they lack a confirmation; files that can no longer be read stay unconfirmed. Returns the stored rows
+    // that gained a confirmation.
+    public List<ApplicationFile> confirmCatalogCollisions(List<ApplicationFile> scanned, List<ApplicationFile> stored)
+            throws IOException, NoSuchAlgorithmException {
+        Set<String> scannedKeys = scanned.stream()
+                .filter(FileScannerService::fastHashed)
+                .map(FileScannerService::fastHashKey)
+                .collect(Collectors.toSet());
+        List<ApplicationFile> colliding = stored.stream()
+                .filter(appFile -> fastHashed(appFile) && scannedKeys.contains(fastHashKey(appFile)))
+                .collect(Collectors.toList());
+        if (colliding.isEmpty()) return List.of();
+        Set<String> collidingKeys = colliding.stream().map(FileScannerService::fastHashKey).collect(Collectors.toSet());
+        List<ApplicationFile> unconfirmed = Stream.concat(scanned.stream(), colliding.stream())
+                .filter(appFile -> fastHashed(appFile) && collidingKeys.contains(fastHashKey(appFile)))
+                .filter(appFile -> appFile.getConfirmedHash().isEmpty())
+                .collect(Collectors.toList());
+        return hashInFull(unconfirmed, colliding);
+    }
+
+    // Exact scans leave the files whose size no other file in the scan has unhashed, and their SHA-256s only meet
+    // fast hashes through a confirmation. So where a scanned file shares its size with stored rows of other paths and
+    // a file of that size comes from an exact scan, every file of the size without a SHA-256 of its bytes is read in
+    // full: exact-scan files take it as their hash, fast-hashed ones as their confirmation. Files hashed on their
+    // words or media payload are left out, as are files that can no longer be read. Returns the stored rows that
+    // gained a hash.
+    public List<ApplicationFile> hashCatalogSizeMatches(List<ApplicationFile> scanned, List<ApplicationFile> stored)
+            throws IOException, NoSuchAlgorithmException {
+        Map<Long, List<ApplicationFile>> storedBySize = stored.stream()
+                .filter(FileScannerService::byteHashed)
+                .collect(Collectors.groupingBy(ApplicationFile::getSize));
+        Map<Long, List<ApplicationFile>> bySize = new HashMap<>();
+        for (ApplicationFile appFile : scanned) {
+            if (byteHashed(appFile) && storedBySize.containsKey(appFile.getSize())) {
+                bySize.computeIfAbsent(appFile.getSize(), size -> new ArrayList<>(storedBySize.get(size))).add(appFile);
+            }
+        }
+        List<ApplicationFile> unhashed = bySize.values().stream()
+                .filter(sameSize -> sameSize.stream().anyMatch(appFile -> "exact".equals(appFile.getScanMode())))
+                .flatMap(List::stream)
+                .filter(appFile -> !hasSha256(appFile))
+                .collect(Collectors.toList());
+        return hashInFull(unhashed, stored);
+    }
+
+    // Reads each file in full for its SHA-256, stored as the confirmation of fast-hashed files and as the hash of the
+    // others; confirmations are cached with the file. Returns the given stored rows that gained a hash.
+    private List<ApplicationFile> hashInFull(List<ApplicationFile> files, List<ApplicationFile> stored)
+            throws IOException, NoSuchAlgorithmException {
+        if (files.isEmpty()) return List.of();
+        List<String> hashes = runOnWorkers(files.stream()
+                .map(appFile -> (Callable<String>) () -> {
+                    try {
+                        return featureExtractor.sha256(new File(appFile.getPath()));
+                    } catch (IOException e) {
+                        System.err.println("Could not hash " + appFile.getPath() + ": " + e.getMessage());
+                        return null;
+                    }
+                })
+                .collect(Collectors.toList()));
+        List<ApplicationFile> hashed = new ArrayList<>();
+        List<ApplicationFile> confirmed = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            if (hashes.get(i) == null) continue;
+            ApplicationFile appFile = files.get(i);
+            if (fastHashed(appFile)) {
+                appFile.setConfirmedHash(hashes.get(i));
+                confirmed.add(appFile);
+            } else {
+                appFile.setHash(hashes.get(i));
+            }
+            hashed.add(appFile);
         }
-        return sb.toString();
+        ScanCacheService.Session cache = scanCacheService.openFiles(confirmed.stream()
+                .map(appFile -> new File(appFile.getPath()))
+                .collect(Collectors.toList()));
+        confirmed.forEach(cache::confirm);
+        scanCacheService.commit(cache);
+        Set<ApplicationFile> newlyHashed = Collections.newSetFromMap(new IdentityHashMap<>());
+        newlyHashed.addAll(hashed);
+        return stored.stream().filter(newlyHashed::contains).collect(Collectors.toList());
+    }
+
+    private static boolean fastHashed(ApplicationFile appFile) {
+        return appFile.getHashAlgorithm().equals(HashStrategy.XXHASH64.getAlgorithm()) && !appFile.getHash().isEmpty();
+    }
+
+    // Hashed, or left unhashed by an exact scan, on the bytes of the whole file
+    private static boolean byteHashed(ApplicationFile appFile) {
+        return appFile.getHashAlgorithm().equals(HashStrategy.SHA256.getAlgorithm()) || fastHashed(appFile);
+    }
+
+    private static boolean hasSha256(ApplicationFile appFile) {
+        return fastHashed(appFile) ? !appFile.getConfirmedHash().isEmpty() : !appFile.getHash().isEmpty();
+    }
+
+    private static String fastHashKey(ApplicationFile appFile) {
+        return appFile.getSize() + ":" + appFile.getHash();
+    }
+
+    // Stops the walker and cancels queued work; draining frees room for the walker's end marker
+    private void abort(Future<Void> walker, BlockingQueue<Future<ApplicationFile>> inFlight) {
+        walker.cancel(true);
+        List<Future<ApplicationFile>> pending = new ArrayList<>();
+        inFlight.drainTo(pending);
+        for (Future<ApplicationFile> future : pending) {
+            future.cancel(true);
+        }
+    }
+
+    private IOException unwrapScanFailure(Throwable cause) throws NoSuchAlgorithmException {
+        if (cause instanceof IOException) return (IOException) cause;
+        if (cause instanceof UncheckedIOException) return ((UncheckedIOException) cause).getCause();
+        if (cause instanceof NoSuchAlgorithmException) throw (NoSuchAlgorithmException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        return new IOException(cause);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
     private String getEnhancedFileExtension(File file) {
@@ -116,86 +563,4 @@ public class FileScannerService {
                extension.equals("jar") || extension.equals("dmg") || extension.equals("deb") ||
                extension.equals("rpm") || extension.equals("app") || extension.equals("ipa");
     }
-
-    private double calculateEnhancedEntropy(File file) throws IOException {
-        int[] freq = new int[256];
-        int total = 0;
-        long fileSize = file.length();
-        
-        // For large files, sample instead of reading entirely
-        int sampleSize = Math.min((int) fileSize, 1024 * 1024); // 1MB sample
-        int bytesToRead = (int) Math.min(fileSize, sampleSize);
-        
-        try (FileInputStream fis = new FileInputStream(file)) {
-            byte[] buffer = new byte[bytesToRead];
-            int bytesRead = fis.read(buffer);
-            
-            for (int i = 0; i < bytesRead; i++) {
-                freq[buffer[i] & 0xFF]++;
-                total++;
-            }
-        }
-        
-        double entropy = 0.0;
-        for (int f : freq) {
-            if (f > 0) {
-                double p = (double) f / total;
-                entropy -= p * (Math.log(p) / Math.log(2));
-            }
-        }
-        
-        // Normalize entropy based on file size
-        if (fileSize > 0) {
-            double sizeFactor = Math.min(1.0, (double) total / fileSize);
-            entropy *= sizeFactor;
-        }
-        
-        return entropy;
-    }
-
-    private String computeNormalizedTextHash(File file) throws IOException, NoSuchAlgorithmException {
-        String content = new String(java.nio.file.Files.readAllBytes(file.toPath()));
-        String[] words = content.toLowerCase().replaceAll("[^a-z0-9 ]", " ").split("\\s+");
-        java.util.Arrays.sort(words);
-        String normalized = String.join(" ", words).trim();
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hash = digest.digest(normalized.getBytes());
-        StringBuilder sb = new StringBuilder();
-        for (byte b : hash) sb.append(String.format("%02x", b));
-        return sb.toString();
-    }
-
-    private String computeEnhancedSsdeepHash(File file) {
-        try {
-            // Enhanced ssdeep computation with better error handling
-            ProcessBuilder pb = new ProcessBuilder("ssdeep", "-b", file.getAbsolutePath());
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-            java.io.BufferedReader reader = new java.io.BufferedReader(new java.io.InputStreamReader(process.getInputStream()));
-            String line;
-            String hash = null;
-            
-            while ((line = reader.readLine()) != null) {
-                if (line.contains(",")) {
-                    String[] parts = line.split(",");
-                    if (parts.length >= 2) {
-                        // ssdeep output format: "filename,hash"
-                        hash = parts[1].trim();
-                        break;
-                    }
-                }
-            }
-            
-            int exitCode = process.waitFor();
-            if (exitCode != 0) {
-                System.err.println("ssdeep process exited with code: " + exitCode);
-                return "";
-            }
-            
-            return hash != null ? hash : "";
-        } catch (Exception e) {
-            System.err.println("Error computing enhanced ssdeep hash for " + file.getName() + ": " + e.getMessage());
-            return "";
-        }
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,263 @@
+package com.example.appmanager.service;
+
+// Streaming context-triggered piecewise hash (CTPH), producing the same digests and scores as ssdeep.
+// All block sizes are tracked at once, so the input only has to be seen a single time.
+public final class FuzzyHash {
+    private static final int ROLLING_WINDOW = 7;
+    private static final int MIN_BLOCKSIZE = 3;
+    private static final int HASH_PRIME = 0x01000193;
+    private static final int HASH_INIT = 0x28021967;
+    private static final int NUM_BLOCKHASHES = 31;
+    private static final int SPAMSUM_LENGTH = 64;
+    private static final char[] B64 =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    // Rolling hash state
+    private final int[] window = new int[ROLLING_WINDOW];
+    private int rollH1, rollH2, rollH3, rollN;
+
+    // One piecewise hash per candidate block size (MIN_BLOCKSIZE << index)
+    private final int[] h = new int[NUM_BLOCKHASHES];
+    private final int[] halfH = new int[NUM_BLOCKHASHES];
+    private final char[][] digest = new char[NUM_BLOCKHASHES][SPAMSUM_LENGTH];
+    private final char[] halfDigest = new char[NUM_BLOCKHASHES];
+    private final int[] digestLength = new int[NUM_BLOCKHASHES];
+    private int bhStart = 0;
+    private int bhEnd = 1;
+    private boolean needLastHash = false;
+    private int lastH;
+    private long totalSize = 0;
+
+    public FuzzyHash() {
+        h[0] = HASH_INIT;
+        halfH[0] = HASH_INIT;
+    }
+
+    public void update(byte[] buffer, int offset, int length) {
+        totalSize += length;
+        for (int i = offset; i < offset + length; i++) {
+            step(buffer[i] & 0xFF);
+        }
+    }
+
+    // Returns "blocksize:digest:digest", or "" when the input is too large to be digested
+    public String digest() {
+        int bi = bhStart;
+        int rollSum = rollSum();
+        while (blockSize(bi) * SPAMSUM_LENGTH < totalSize) {
+            if (++bi >= NUM_BLOCKHASHES) return "";
+        }
+        while (bi >= bhEnd) --bi;
+        while (bi > bhStart && digestLength[bi] < SPAMSUM_LENGTH / 2) --bi;
+
+        StringBuilder result = new StringBuilder(2 * SPAMSUM_LENGTH + 20);
+        result.append(blockSize(bi)).append(':');
+        result.append(digest[bi], 0, digestLength[bi]);
+        if (rollSum != 0) {
+            result.append(B64[h[bi] & 63]);
+        } else if (digest[bi][digestLength[bi]] != 0) {
+            result.append(digest[bi][digestLength[bi]]);
+        }
+        result.append(':');
+        if (bi < bhEnd - 1) {
+            ++bi;
+            result.append(digest[bi], 0, Math.min(digestLength[bi], SPAMSUM_LENGTH / 2 - 1));
+            if (rollSum != 0) {
+                result.append(B64[halfH[bi] & 63]);
+            } else if (halfDigest[bi] != 0) {
+                result.append(halfDigest[bi]);
+            }
+        } else if (rollSum != 0) {
+            result.append(B64[(bi == 0 ? h[bi] : lastH) & 63]);
+        }
+        return result.toString();
+    }
+
+    // Similarity score (0-100) of two digests, 0 when they are malformed or their block sizes are incompatible
+    public static int compare(String first, String second) {
+        Signature a = Signature.parse(first);
+        Signature b = Signature.parse(second);
+        if (a == null || b == null) return 0;
+
+        // Digests are only comparable at a block size they have in common
+        if (a.blockSize != b.blockSize && a.blockSize * 2 != b.blockSize
+                && (a.blockSize % 2 == 1 || a.blockSize / 2 != b.blockSize)) {
+            return 0;
+        }
+        if (a.blockSize == b.blockSize && a.part1.equals(b.part1) && a.part2.equals(b.part2)) {
+            return 100;
+        }
+        if (a.blockSize == b.blockSize) {
+            return Math.max(scoreStrings(a.part1, b.part1, a.blockSize),
+                    scoreStrings(a.part2, b.part2, a.blockSize * 2));
+        } else if (a.blockSize * 2 == b.blockSize) {
+            return scoreStrings(b.part1, a.part2, b.blockSize);
+        } else {
+            return scoreStrings(a.part1, b.part2, a.blockSize);
+        }
+    }
+
+    private static int scoreStrings(String s1, String s2, long blockSize) {
+        if (!hasCommonSubstring(s1, s2)) return 0;
+
+        // Scale the edit distance to 0-100, where 100 means the strings are identical
+        long score = editDistance(s1, s2);
+        score = (score * SPAMSUM_LENGTH) / (s1.length() + s2.length());
+        score = (100 * score) / SPAMSUM_LENGTH;
+        if (score >= 100) return 0;
+        score = 100 - score;
+
+        // Small block sizes on short inputs are not allowed to exaggerate the match
+        if (blockSize >= (99 + ROLLING_WINDOW) / ROLLING_WINDOW * MIN_BLOCKSIZE) return (int) score;
+        long cap = blockSize / MIN_BLOCKSIZE * Math.min(s1.length(), s2.length());
+        return (int) Math.min(score, cap);
+    }
+
+    private static boolean hasCommonSubstring(String s1, String s2) {
+        if (s1.length() < ROLLING_WINDOW || s2.length() < ROLLING_WINDOW) return false;
+        for (int i = 0; i + ROLLING_WINDOW <= s1.length(); i++) {
+            if (s2.contains(s1.substring(i, i + ROLLING_WINDOW))) return true;
+        }
+        return false;
+    }
+
+    // Edit distance with insert/remove cost 1 and replace cost 2, two rows of at most SPAMSUM_LENGTH + 1
+    private static int editDistance(String s1, String s2) {
+        int[] previous = new int[s2.length() + 1];
+        int[] current = new int[s2.length() + 1];
+        for (int j = 0; j <= s2.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 0; i < s1.length(); i++) {
+            current[0] = i + 1;
+            for (int j = 0; j < s2.length(); j++) {
+                int insert = previous[j + 1] + 1;
+                int remove = current[j] + 1;
+                int replace = previous[j] + (s1.charAt(i) == s2.charAt(j) ? 0 : 2);
+                current[j + 1] = Math.min(Math.min(insert, remove), replace);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[s2.length()];
+    }
+
+    private static final class Signature {
+        final long blockSize;
+        final String part1;
+        final String part2;
+
+        private Signature(long blockSize, String part1, String part2) {
+            this.blockSize = blockSize;
+            this.part1 = part1;
+            this.part2 = part2;
+        }
+
+        // Accepts "blocksize:part1:part2" with an optional ",filename" suffix
+        static Signature parse(String digest) {
+            if (digest == null) return null;
+            int first = digest.indexOf(':');
+            int second = first < 0 ? -1 : digest.indexOf(':', first + 1);
+            if (first <= 0 || second < 0) return null;
+            long blockSize;
+            try {
+                blockSize = Long.parseLong(digest.substring(0, first));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            int end = digest.indexOf(',', second + 1);
+            String part1 = digest.substring(first + 1, second);
+            String part2 = digest.substring(second + 1, end < 0 ? digest.length() : end);
+            return new Signature(blockSize, eliminateSequences(part1), eliminateSequences(part2));
+        }
+
+        // Truncates to SPAMSUM_LENGTH and collapses runs of more than three identical characters
+        private static String eliminateSequences(String part) {
+            int length = Math.min(part.length(), SPAMSUM_LENGTH);
+            StringBuilder result = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                char c = part.charAt(i);
+                if (i < 3 || c != part.charAt(i - 1) || c != part.charAt(i - 2) || c != part.charAt(i - 3)) {
+                    result.append(c);
+                }
+            }
+            return result.toString();
+        }
+    }
+
+    private void step(int c) {
+        rollH2 -= rollH1;
+        rollH2 += ROLLING_WINDOW * c;
+        rollH1 += c;
+        rollH1 -= window[rollN];
+        window[rollN] = c;
+        rollN = (rollN + 1) % ROLLING_WINDOW;
+        rollH3 = (rollH3 << 5) ^ c;
+        long rollSum = Integer.toUnsignedLong(rollSum());
+
+        for (int i = bhStart; i < bhEnd; ++i) {
+            h[i] = sumHash(c, h[i]);
+            halfH[i] = sumHash(c, halfH[i]);
+        }
+        if (needLastHash) {
+            lastH = sumHash(c, lastH);
+        }
+
+        for (int i = bhStart; i < bhEnd; ++i) {
+            long blockSize = blockSize(i);
+            // A trigger point for one block size is also one for every smaller block size
+            if (rollSum % blockSize != blockSize - 1) break;
+            if (digestLength[i] == 0) {
+                tryForkBlockHash();
+            }
+            digest[i][digestLength[i]] = B64[h[i] & 63];
+            halfDigest[i] = B64[halfH[i] & 63];
+            if (digestLength[i] < SPAMSUM_LENGTH - 1) {
+                digest[i][++digestLength[i]] = 0;
+                h[i] = HASH_INIT;
+                if (digestLength[i] < SPAMSUM_LENGTH / 2) {
+                    halfH[i] = HASH_INIT;
+                    halfDigest[i] = 0;
+                }
+            } else {
+                tryReduceBlockHash();
+            }
+        }
+    }
+
+    private void tryForkBlockHash() {
+        int last = bhEnd - 1;
+        if (bhEnd < NUM_BLOCKHASHES) {
+            h[bhEnd] = h[last];
+            halfH[bhEnd] = halfH[last];
+            digest[bhEnd][0] = 0;
+            halfDigest[bhEnd] = 0;
+            digestLength[bhEnd] = 0;
+            ++bhEnd;
+        } else if (!needLastHash) {
+            needLastHash = true;
+            lastH = h[last];
+        }
+    }
+
+    private void tryReduceBlockHash() {
+        // The smallest block size can be dropped once it could no longer be selected by digest()
+        if (bhEnd - bhStart < 2) return;
+        if (blockSize(bhStart) * SPAMSUM_LENGTH >= totalSize) return;
+        if (digestLength[bhStart + 1] < SPAMSUM_LENGTH / 2) return;
+        ++bhStart;
+    }
+
+    private int rollSum() {
+        return rollH1 + rollH2 + rollH3;
+    }
+
+    private static int sumHash(int c, int hash) {
+        return (hash * HASH_PRIME) ^ c;
+    }
+
+    private static long blockSize(int index) {
+        return ((long) MIN_BLOCKSIZE) << index;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.appmanager.service;
+
+// Whole-file content hash computed by full scans. SHA-256 is strong on its own; XXH64 is much cheaper and
+// only needs SHA-256 for the files whose fast hash collides with another file's.
+public enum HashStrategy {
+    SHA256("sha256"),
+    XXHASH64("xxhash64");
+
+    private final String algorithm;
+
+    HashStrategy(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    // Name recorded on each file next to the hash it produced
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public static HashStrategy forAlgorithm(String algorithm) {
+        for (HashStrategy strategy : values()) {
+            if (strategy.algorithm.equalsIgnoreCase(algorithm)) return strategy;
+        }
+        throw new IllegalArgumentException("Unknown hash algorithm: " + algorithm);
+    }
+}
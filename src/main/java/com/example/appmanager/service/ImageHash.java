@@ -0,0 +1,144 @@
+package com.example.appmanager.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+// Perceptual hash of an image: its luminance is averaged down to a 32x32 grid, and each of the 64 bits says whether
+// one of the 8x8 lowest-frequency DCT coefficients of that grid is above their median. The hash follows the coarse
+// structure of the picture, so resized, recompressed or re-encoded copies of an image differ in a few bits at most,
+// where unrelated images differ in about half. Images are decoded with source subsampling down to a few times the
+// grid size, so a full-size raster is never held in memory. Formats are those ImageIO has a reader for.
+final class ImageHash {
+    private static final int GRID = 32;
+    private static final int COEFFICIENTS = 8;
+    // Subsampled images keep at least this many pixels along their shorter side
+    private static final int DECODE_SIZE = 4 * GRID;
+    // Images whose coefficients all stay below this, flat colour or nearly so, have no structure to hash
+    private static final double MIN_CONTRAST = 1e-3;
+    // Differing bits at which two hashes score 0; unrelated images land around here
+    private static final int UNRELATED_DISTANCE = 32;
+    // Index keys per hash: the hash cut into chunks of equal width
+    static final int CHUNKS = 4;
+    static final int CHUNK_BITS = 64 / CHUNKS;
+
+    private static final double[][] COS = new double[COEFFICIENTS][GRID];
+
+    static {
+        for (int u = 0; u < COEFFICIENTS; u++) {
+            for (int x = 0; x < GRID; x++) {
+                COS[u][x] = Math.cos((2 * x + 1) * u * Math.PI / (2 * GRID));
+            }
+        }
+    }
+
+    private ImageHash() {
+    }
+
+    static boolean covers(String fileType) {
+        return fileType.equals("jpg") || fileType.equals("jpeg") || fileType.equals("png") || fileType.equals("gif")
+                || fileType.equals("bmp") || fileType.equals("tiff") || fileType.equals("webp");
+    }
+
+    // The hash of the first image in the file, or null when no reader decodes it or it is too small or flat to hash
+    static Long of(File file) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if (width < GRID || height < GRID) return null;
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.min(width, height) / DECODE_SIZE);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return hash(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Truncated or malformed images are left to the byte-level comparisons
+            return null;
+        }
+    }
+
+    // From 0 to 100, falling with the bits the hashes differ in
+    static double similarity(long a, long b) {
+        return Math.max(0.0, 100.0 * (1.0 - (double) Long.bitCount(a ^ b) / UNRELATED_DISTANCE));
+    }
+
+    // Chunk i of the hash; hashes within CHUNKS * (r + 1) - 1 bits of each other have some chunk within r bits
+    static long chunk(long hash, int i) {
+        return hash >>> (i * CHUNK_BITS) & ((1L << CHUNK_BITS) - 1);
+    }
+
+    private static Long hash(BufferedImage image) {
+        double[][] grid = luminanceGrid(image);
+        // Separable DCT-II, only as far as the coefficients kept: rows first, then columns
+        double[][] rows = new double[GRID][COEFFICIENTS];
+        for (int y = 0; y < GRID; y++) {
+            for (int u = 0; u < COEFFICIENTS; u++) {
+                double sum = 0;
+                for (int x = 0; x < GRID; x++) {
+                    sum += grid[y][x] * COS[u][x];
+                }
+                rows[y][u] = sum;
+            }
+        }
+        double[] coefficients = new double[COEFFICIENTS * COEFFICIENTS];
+        for (int v = 0; v < COEFFICIENTS; v++) {
+            for (int u = 0; u < COEFFICIENTS; u++) {
+                double sum = 0;
+                for (int y = 0; y < GRID; y++) {
+                    sum += rows[y][u] * COS[v][y];
+                }
+                coefficients[v * COEFFICIENTS + u] = sum / (GRID * GRID);
+            }
+        }
+        // The median leaves out the DC term, which only says how bright the image is overall
+        double[] ac = Arrays.copyOfRange(coefficients, 1, coefficients.length);
+        Arrays.sort(ac);
+        if (Math.max(-ac[0], ac[ac.length - 1]) < MIN_CONTRAST) return null;
+        double median = ac[ac.length / 2];
+        long hash = 0;
+        for (int i = 0; i < coefficients.length; i++) {
+            hash = hash << 1 | (coefficients[i] > median ? 1 : 0);
+        }
+        return hash;
+    }
+
+    // Mean luminance, from 0 to 1, of each cell of a GRID x GRID division of the image
+    private static double[][] luminanceGrid(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[][] sums = new double[GRID][GRID];
+        int[][] counts = new int[GRID][GRID];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellY = (int) ((long) y * GRID / height);
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                double luminance = (0.299 * (rgb >> 16 & 0xFF) + 0.587 * (rgb >> 8 & 0xFF) + 0.114 * (rgb & 0xFF)) / 255;
+                int cellX = (int) ((long) x * GRID / width);
+                sums[cellY][cellX] += luminance;
+                counts[cellY][cellX]++;
+            }
+        }
+        for (int y = 0; y < GRID; y++) {
+            for (int x = 0; x < GRID; x++) {
+                sums[y][x] /= counts[y][x];
+            }
+        }
+        return sums;
+    }
+}
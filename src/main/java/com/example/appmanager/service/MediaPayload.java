@@ -0,0 +1,267 @@
+package com.example.appmanager.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+// The byte ranges of a tagged audio or image file that hold its media rather than its tags or metadata, so files
+// differing only in those hash alike: MP3 and FLAC without their ID3 and APE tags, JPEG without its APPn and comment
+// segments (EXIF, XMP, thumbnails) and PNG without its text, time and EXIF chunks. FLAC is identified by the MD5 of
+// its decoded audio that the encoder stored in STREAMINFO, when it did. The ranges are found from the container
+// structure with a few small reads at the head and tail; formats are recognized by their signature, and files that
+// do not parse are left to the ordinary hash.
+final class MediaPayload {
+    static final String PAYLOAD_SHA256 = "payload-sha256";
+    static final String FLAC_MD5 = "flac-md5";
+    // Segments, chunks or metadata blocks walked at most before a file is taken to be malformed
+    private static final int MAX_SEGMENTS = 1 << 20;
+    private static final Set<String> PNG_METADATA = Set.of("tEXt", "zTXt", "iTXt", "tIME", "eXIf");
+
+    private long[] starts = new long[4];
+    private long[] ends = new long[4];
+    private int ranges = 0;
+    private String streamDigest;
+    private MessageDigest sha256;
+
+    private MediaPayload() {
+    }
+
+    static boolean covers(String fileType) {
+        return fileType.equals("mp3") || fileType.equals("flac") || fileType.equals("jpg") || fileType.equals("jpeg")
+                || fileType.equals("png");
+    }
+
+    // Algorithms a file of this type may have been hashed with in place of the configured one
+    static List<String> hashAlgorithms(String fileType) {
+        if (!covers(fileType)) return List.of();
+        return fileType.equals("flac") ? List.of(FLAC_MD5, PAYLOAD_SHA256) : List.of(PAYLOAD_SHA256);
+    }
+
+    // The payload of the file, or null when it is not in a covered format or does not parse
+    static MediaPayload locate(File file, String fileType) throws IOException, NoSuchAlgorithmException {
+        MediaPayload payload = new MediaPayload();
+        boolean parsed;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            parsed = switch (fileType) {
+                case "mp3", "flac" -> payload.parseAudio(in);
+                case "jpg", "jpeg" -> payload.parseJpeg(in);
+                case "png" -> payload.parsePng(in);
+                default -> false;
+            };
+        }
+        if (!parsed) return null;
+        if (payload.streamDigest == null) payload.sha256 = MessageDigest.getInstance("SHA-256");
+        return payload;
+    }
+
+    String algorithm() {
+        return streamDigest != null ? FLAC_MD5 : PAYLOAD_SHA256;
+    }
+
+    // Bytes of payload, which a file with a stored digest never needs read
+    long size() {
+        long size = 0;
+        for (int i = 0; i < ranges; i++) {
+            size += ends[i] - starts[i];
+        }
+        return size;
+    }
+
+    // What a file must share with another to possibly have the same payload
+    String groupingKey() {
+        return streamDigest != null ? FLAC_MD5 + ":" + streamDigest : PAYLOAD_SHA256 + ":" + size();
+    }
+
+    boolean needsContent() {
+        return streamDigest == null;
+    }
+
+    // Feeds the payload part of length bytes read from the given file position
+    void update(long position, byte[] buffer, int length) {
+        if (sha256 == null) return;
+        for (int i = 0; i < ranges; i++) {
+            long from = Math.max(starts[i], position);
+            long to = Math.min(ends[i], position + length);
+            if (from < to) sha256.update(buffer, (int) (from - position), (int) (to - from));
+        }
+    }
+
+    // Reads and feeds just the payload ranges of the file
+    void read(File file, byte[] buffer) throws IOException {
+        if (sha256 == null) return;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            for (int i = 0; i < ranges; i++) {
+                in.seek(starts[i]);
+                for (long position = starts[i]; position < ends[i]; ) {
+                    int n = (int) Math.min(buffer.length, ends[i] - position);
+                    in.readFully(buffer, 0, n);
+                    update(position, buffer, n);
+                    position += n;
+                }
+            }
+        }
+    }
+
+    String digest() {
+        return streamDigest != null ? streamDigest : HexFormat.of().formatHex(sha256.digest());
+    }
+
+    private void add(long start, long end) {
+        if (ranges > 0 && ends[ranges - 1] == start) {
+            ends[ranges - 1] = end;
+            return;
+        }
+        if (ranges == starts.length) {
+            starts = Arrays.copyOf(starts, ranges * 2);
+            ends = Arrays.copyOf(ends, ranges * 2);
+        }
+        starts[ranges] = start;
+        ends[ranges] = end;
+        ranges++;
+    }
+
+    // MP3 or FLAC, whichever the content turns out to be, after any leading ID3v2 tags and before trailing tags
+    private boolean parseAudio(RandomAccessFile in) throws IOException {
+        long length = in.length();
+        byte[] header = new byte[10];
+        long start = 0;
+        for (int n = 0; start + 10 <= length && read(in, start, header, 10) && ascii(header, 0, 3).equals("ID3"); n++) {
+            if (n == MAX_SEGMENTS) return false;
+            // Syncsafe size of the tag body, plus the header and an optional footer
+            long size = (header[6] & 0x7F) << 21 | (header[7] & 0x7F) << 14 | (header[8] & 0x7F) << 7 | (header[9] & 0x7F);
+            start += 10 + size + ((header[5] & 0x10) != 0 ? 10 : 0);
+        }
+        long end = withoutTrailingTags(in, start, length);
+        if (end - start >= 4 && read(in, start, header, 4) && ascii(header, 0, 4).equals("fLaC")) {
+            return parseFlac(in, start + 4, end);
+        }
+        if (end - start >= 2 && read(in, start, header, 2) && (header[0] & 0xFF) == 0xFF && (header[1] & 0xE0) == 0xE0) {
+            add(start, end);
+            return true;
+        }
+        return false;
+    }
+
+    // Where the content ends once ID3v1 and APEv2 tags, in any order, are taken off the end
+    private static long withoutTrailingTags(RandomAccessFile in, long start, long end) throws IOException {
+        byte[] footer = new byte[32];
+        while (true) {
+            if (end - start >= 128 && read(in, end - 128, footer, 3) && ascii(footer, 0, 3).equals("TAG")) {
+                end -= 128;
+            } else if (end - start >= 32 && read(in, end - 32, footer, 32) && ascii(footer, 0, 8).equals("APETAGEX")) {
+                // The size covers the items and footer; a header, when flagged present, comes on top
+                long size = uint32LittleEndian(footer, 12) + ((footer[23] & 0x80) != 0 ? 32 : 0);
+                if (size < 32 || size > end - start) return end;
+                end -= size;
+            } else {
+                return end;
+            }
+        }
+    }
+
+    // Metadata blocks up to the last one, then audio frames; STREAMINFO holds the MD5 of the decoded samples
+    private boolean parseFlac(RandomAccessFile in, long position, long end) throws IOException {
+        byte[] block = new byte[34];
+        boolean last = false;
+        for (int n = 0; !last; n++) {
+            if (n == MAX_SEGMENTS || position + 4 > end) return false;
+            read(in, position, block, 4);
+            last = (block[0] & 0x80) != 0;
+            long size = (block[1] & 0xFF) << 16 | (block[2] & 0xFF) << 8 | (block[3] & 0xFF);
+            if ((block[0] & 0x7F) == 0 && size >= 34 && position + 4 + 34 <= end) {
+                read(in, position + 4, block, 34);
+                boolean stored = false;
+                for (int i = 18; i < 34; i++) {
+                    stored |= block[i] != 0;
+                }
+                // Encoders that could not work out the MD5 leave it zero
+                if (stored) streamDigest = HexFormat.of().formatHex(block, 18, 34);
+            }
+            position += 4 + size;
+        }
+        if (position > end) return false;
+        add(position, end);
+        return true;
+    }
+
+    // Segments other than APPn and comments, then everything from the start of scan on
+    private boolean parseJpeg(RandomAccessFile in) throws IOException {
+        long length = in.length();
+        byte[] marker = new byte[4];
+        if (length < 4 || !read(in, 0, marker, 2) || (marker[0] & 0xFF) != 0xFF || (marker[1] & 0xFF) != 0xD8) {
+            return false;
+        }
+        add(0, 2);
+        long position = 2;
+        for (int n = 0; n < MAX_SEGMENTS && position + 4 <= length; n++) {
+            read(in, position, marker, 4);
+            if ((marker[0] & 0xFF) != 0xFF) return false;
+            int type = marker[1] & 0xFF;
+            if (type == 0xFF) {
+                // Fill byte before a marker
+                position++;
+            } else if (type == 0xDA || type == 0xD9) {
+                // Entropy-coded data has no length; the rest of the file is payload
+                add(position, length);
+                return true;
+            } else if (type == 0x01 || type >= 0xD0 && type <= 0xD7) {
+                // Markers without a segment
+                add(position, position + 2);
+                position += 2;
+            } else {
+                long size = 2 + ((marker[2] & 0xFF) << 8 | (marker[3] & 0xFF));
+                if (position + size > length) return false;
+                if (!(type >= 0xE0 && type <= 0xEF || type == 0xFE)) add(position, position + size);
+                position += size;
+            }
+        }
+        return false;
+    }
+
+    // The signature and every chunk but the metadata ones, through IEND
+    private boolean parsePng(RandomAccessFile in) throws IOException {
+        long length = in.length();
+        byte[] header = new byte[8];
+        if (length < 8 || !read(in, 0, header, 8) || (header[0] & 0xFF) != 0x89 || !ascii(header, 1, 3).equals("PNG")) {
+            return false;
+        }
+        add(0, 8);
+        long position = 8;
+        for (int n = 0; n < MAX_SEGMENTS && position + 12 <= length; n++) {
+            read(in, position, header, 8);
+            // Length, type, data and CRC
+            long size = 12 + uint32BigEndian(header, 0);
+            String type = ascii(header, 4, 4);
+            if (position + size > length) return false;
+            if (!PNG_METADATA.contains(type)) add(position, position + size);
+            position += size;
+            if (type.equals("IEND")) return true;
+        }
+        return false;
+    }
+
+    private static boolean read(RandomAccessFile in, long position, byte[] bytes, int length) throws IOException {
+        in.seek(position);
+        in.readFully(bytes, 0, length);
+        return true;
+    }
+
+    private static String ascii(byte[] bytes, int at, int length) {
+        return new String(bytes, at, length, StandardCharsets.ISO_8859_1);
+    }
+
+    private static long uint32LittleEndian(byte[] bytes, int at) {
+        return (bytes[at] & 0xFFL) | (bytes[at + 1] & 0xFFL) << 8 | (bytes[at + 2] & 0xFFL) << 16 | (bytes[at + 3] & 0xFFL) << 24;
+    }
+
+    private static long uint32BigEndian(byte[] bytes, int at) {
+        return (bytes[at] & 0xFFL) << 24 | (bytes[at + 1] & 0xFFL) << 16 | (bytes[at + 2] & 0xFFL) << 8 | (bytes[at + 3] & 0xFFL);
+    }
+}
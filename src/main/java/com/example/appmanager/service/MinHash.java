@@ -0,0 +1,67 @@
+package com.example.appmanager.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// MinHash signature of a set of words: for each of 128 hash functions, the smallest value over the set. The share
+// of positions where two signatures agree estimates the Jaccard similarity of the two word sets.
+final class MinHash {
+    static final int PERMUTATIONS = 128;
+    // LSH banding: signatures agreeing on all rows of any one band become candidates. 42 bands of 3 rows put the
+    // detection threshold near a Jaccard of 0.29, below the lowest Jaccard a text pair can still be matched at.
+    static final int BANDS = 42;
+    static final int ROWS = 3;
+
+    private final int[] minimums = new int[PERMUTATIONS];
+
+    MinHash() {
+        Arrays.fill(minimums, Integer.MAX_VALUE);
+    }
+
+    // Adding a word more than once has no effect
+    void add(char[] word, int length) {
+        long h1 = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            h1 = (h1 ^ word[i]) * 0x100000001b3L;
+        }
+        long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+        h1 = mix(h1);
+        // Hash functions derived from two base hashes (Kirsch-Mitzenmacher), each value mixed again
+        for (int k = 0; k < PERMUTATIONS; k++) {
+            int value = (int) (mix(h1 + k * h2) >>> 33);
+            if (value < minimums[k]) minimums[k] = value;
+        }
+    }
+
+    byte[] signature() {
+        ByteBuffer bytes = ByteBuffer.allocate(PERMUTATIONS * 4);
+        bytes.asIntBuffer().put(minimums);
+        return bytes.array();
+    }
+
+    // Estimated Jaccard similarity, or -1 unless both signatures are present
+    static double similarity(byte[] a, byte[] b) {
+        if (a.length != PERMUTATIONS * 4 || b.length != PERMUTATIONS * 4) return -1;
+        int same = 0;
+        for (int k = 0; k < PERMUTATIONS * 4; k += 4) {
+            if (a[k] == b[k] && a[k + 1] == b[k + 1] && a[k + 2] == b[k + 2] && a[k + 3] == b[k + 3]) same++;
+        }
+        return (double) same / PERMUTATIONS;
+    }
+
+    // Bucket key of one band of a signature
+    static long bandKey(byte[] signature, int band) {
+        ByteBuffer values = ByteBuffer.wrap(signature);
+        long key = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            key = mix(key + values.getInt(row * 4));
+        }
+        return key;
+    }
+
+    static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb34cd958e53bL;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.appmanager.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+// Order-independent digest of a text: SHA-256 of its lowercased [a-z0-9] words, sorted and joined by single
+// spaces. Words are counted as the bytes stream in; when too many distinct words pile up, the sorted counts
+// are spilled to a temporary file and all runs are merged at the end, so memory stays bounded for any size.
+// The distinct words can also be fed to a MinHash signature on the way, and every word to a text profile.
+final class NormalizedTextHasher implements Closeable {
+    private static final int DEFAULT_MAX_DISTINCT_WORDS = 1 << 18;
+
+    private final int maxDistinctWords;
+    private final WordTokenizer tokenizer = new WordTokenizer(this::word);
+    private final WordCounts counts = new WordCounts();
+    private final MinHash minHash;
+    private final TextProfile.Builder profile;
+    private final List<Path> runs = new ArrayList<>();
+
+    NormalizedTextHasher() {
+        this(null);
+    }
+
+    NormalizedTextHasher(MinHash minHash) {
+        this(minHash, null, DEFAULT_MAX_DISTINCT_WORDS);
+    }
+
+    NormalizedTextHasher(MinHash minHash, TextProfile.Builder profile) {
+        this(minHash, profile, DEFAULT_MAX_DISTINCT_WORDS);
+    }
+
+    NormalizedTextHasher(MinHash minHash, TextProfile.Builder profile, int maxDistinctWords) {
+        this.minHash = minHash;
+        this.profile = profile;
+        this.maxDistinctWords = maxDistinctWords;
+    }
+
+    void update(byte[] buffer, int offset, int length) throws IOException {
+        tokenizer.update(buffer, offset, length);
+    }
+
+    String digest() throws IOException, NoSuchAlgorithmException {
+        tokenizer.finish();
+
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        WordWriter writer = new WordWriter(sha256);
+        if (runs.isEmpty()) {
+            for (Map.Entry<String, Long> entry : counts.sorted().entrySet()) {
+                writer.write(entry.getKey(), entry.getValue());
+            }
+        } else {
+            spill();
+            merge(writer);
+        }
+        writer.flush();
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Path run : runs) {
+            Files.deleteIfExists(run);
+        }
+        runs.clear();
+    }
+
+    private void word(char[] word, int length, int hash) throws IOException {
+        if (profile != null) {
+            profile.add(word, length);
+        }
+        if (counts.add(word, length, hash) && minHash != null) {
+            minHash.add(word, length);
+        }
+        if (counts.size() > maxDistinctWords) {
+            spill();
+        }
+    }
+
+    // Writes the current counts, sorted, as one run and starts over
+    private void spill() throws IOException {
+        if (counts.size() == 0) return;
+        Path run = Files.createTempFile("text-words", ".run");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+            for (Map.Entry<String, Long> entry : counts.sorted().entrySet()) {
+                byte[] bytes = entry.getKey().getBytes(StandardCharsets.US_ASCII);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                out.writeLong(entry.getValue());
+            }
+        }
+        counts.clear();
+    }
+
+    private void merge(WordWriter writer) throws IOException {
+        List<RunReader> readers = new ArrayList<>();
+        PriorityQueue<RunReader> heads = new PriorityQueue<>((a, b) -> a.word.compareTo(b.word));
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.next()) heads.add(reader);
+            }
+            while (!heads.isEmpty()) {
+                RunReader head = heads.poll();
+                String current = head.word;
+                long count = head.count;
+                if (head.next()) heads.add(head);
+                while (!heads.isEmpty() && heads.peek().word.equals(current)) {
+                    RunReader same = heads.poll();
+                    count += same.count;
+                    if (same.next()) heads.add(same);
+                }
+                writer.write(current, count);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+        }
+    }
+
+    // Open-addressing word counter that only allocates when it meets a new word
+    private static final class WordCounts {
+        private String[] words = new String[1024];
+        private long[] counts = new long[1024];
+        private int size = 0;
+
+        // Whether the word was not in the table yet
+        boolean add(char[] word, int length, int hash) {
+            int mask = words.length - 1;
+            int slot = mix(hash) & mask;
+            while (words[slot] != null) {
+                if (matches(words[slot], word, length)) {
+                    counts[slot]++;
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            words[slot] = new String(word, 0, length);
+            counts[slot] = 1;
+            if (++size * 2 > words.length) {
+                grow();
+            }
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+
+        TreeMap<String, Long> sorted() {
+            TreeMap<String, Long> sorted = new TreeMap<>();
+            for (int i = 0; i < words.length; i++) {
+                if (words[i] != null) sorted.put(words[i], counts[i]);
+            }
+            return sorted;
+        }
+
+        void clear() {
+            Arrays.fill(words, null);
+            size = 0;
+        }
+
+        private void grow() {
+            String[] oldWords = words;
+            long[] oldCounts = counts;
+            words = new String[oldWords.length * 2];
+            counts = new long[oldWords.length * 2];
+            int mask = words.length - 1;
+            for (int i = 0; i < oldWords.length; i++) {
+                if (oldWords[i] == null) continue;
+                int slot = mix(oldWords[i].hashCode()) & mask;
+                while (words[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                words[slot] = oldWords[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+
+        private static boolean matches(String candidate, char[] word, int length) {
+            if (candidate.length() != length) return false;
+            for (int i = 0; i < length; i++) {
+                if (candidate.charAt(i) != word[i]) return false;
+            }
+            return true;
+        }
+
+        // The running hash equals String.hashCode(); spread it so linear probing stays short
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    // Feeds each word as many times as it occurred, separated by single spaces, in digest-sized blocks
+    private static final class WordWriter {
+        private final MessageDigest digest;
+        private final byte[] block = new byte[64 * 1024];
+        private int used = 0;
+        private boolean first = true;
+
+        WordWriter(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        void write(String word, long count) {
+            byte[] bytes = word.getBytes(StandardCharsets.US_ASCII);
+            for (long i = 0; i < count; i++) {
+                if (!first) put((byte) ' ');
+                first = false;
+                if (bytes.length > block.length - used) {
+                    flush();
+                    if (bytes.length > block.length) {
+                        digest.update(bytes);
+                        continue;
+                    }
+                }
+                System.arraycopy(bytes, 0, block, used, bytes.length);
+                used += bytes.length;
+            }
+        }
+
+        private void put(byte b) {
+            if (used == block.length) flush();
+            block[used++] = b;
+        }
+
+        void flush() {
+            digest.update(block, 0, used);
+            used = 0;
+        }
+    }
+
+    private static final class RunReader {
+        private final DataInputStream in;
+        private String word;
+        private long count;
+
+        RunReader(Path run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+        }
+
+        boolean next() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            word = new String(bytes, StandardCharsets.US_ASCII);
+            count = in.readLong();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.appmanager.service;
+
+// Size and entropy comparisons of one file against a block of candidates, one column per measure. The candidates'
+// values are gathered into contiguous columns first so each measure is a straight loop over primitive arrays, which
+// the JIT can unroll and vectorize, instead of a pair of getter calls per measure per pair.
+final class PairFeatures {
+    long[] otherSizes = new long[64];
+    double[] otherEntropies = new double[64];
+    // Sizes compare in whole numbers, as the scorers always have: the difference is 1 against an empty file and 0
+    // otherwise, and the ratio is 1 for equal sizes and 0 otherwise
+    double[] sizeDiff = new double[64];
+    double[] sizeRatio = new double[64];
+    double[] entropyDiff = new double[64];
+    double[] entropyRatio = new double[64];
+
+    void ensureCapacity(int count) {
+        if (count <= otherSizes.length) return;
+        int capacity = Math.max(count, otherSizes.length * 2);
+        otherSizes = new long[capacity];
+        otherEntropies = new double[capacity];
+        sizeDiff = new double[capacity];
+        sizeRatio = new double[capacity];
+        entropyDiff = new double[capacity];
+        entropyRatio = new double[capacity];
+    }
+
+    // Fills the columns for the first count gathered candidates
+    void compute(long size, double entropy, int count) {
+        for (int k = 0; k < count; k++) {
+            long max = Math.max(size, otherSizes[k]);
+            // Two empty files have the same size
+            sizeDiff[k] = max == 0 ? 0.0 : Math.abs(size - otherSizes[k]) / max;
+            sizeRatio[k] = max == 0 ? 1.0 : Math.min(size, otherSizes[k]) / max;
+        }
+        for (int k = 0; k < count; k++) {
+            entropyDiff[k] = Math.abs(entropy - otherEntropies[k]);
+        }
+        for (int k = 0; k < count; k++) {
+            entropyRatio[k] = Math.min(entropy, otherEntropies[k]) / Math.max(entropy, otherEntropies[k]);
+        }
+    }
+}
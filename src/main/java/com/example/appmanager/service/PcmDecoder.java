@@ -0,0 +1,267 @@
+package com.example.appmanager.service;
+
+import java.nio.charset.StandardCharsets;
+
+// Decodes the samples of an uncompressed WAV or AIFF file as its bytes stream past, mixing the channels down to mono.
+// The container is recognized by its header rather than the file name; other formats, compressed WAV and AIFF-C
+// are passed over without producing samples. Only the first sample chunk is decoded.
+final class PcmDecoder {
+    // Receives samples in [-1, 1] and returns false once it wants no more
+    interface SampleSink {
+        boolean accept(float sample);
+    }
+
+    private static final int FILE_HEADER = 0;
+    private static final int CHUNK_HEADER = 1;
+    private static final int FORMAT = 2;
+    private static final int SOUND_PREFIX = 3;
+    private static final int SKIP = 4;
+    private static final int SAMPLES = 5;
+    private static final int DONE = 6;
+    // Format chunks are a few dozen bytes; anything much larger is not one this decoder understands
+    private static final int MAX_FORMAT_SIZE = 256;
+
+    private final SampleSink sink;
+    private int state = FILE_HEADER;
+    private final byte[] pending = new byte[MAX_FORMAT_SIZE];
+    private int needed = 12;
+    private int filled = 0;
+    private long skip = 0;
+    private boolean aiff;
+    private boolean aifc;
+    private boolean formatPadded;
+
+    private boolean littleEndian;
+    private boolean floating;
+    private int channels;
+    private int bytesPerSample;
+    private double sampleRate;
+    private long remaining;
+    private byte[] frame;
+    private int frameFilled = 0;
+
+    PcmDecoder(SampleSink sink) {
+        this.sink = sink;
+    }
+
+    // Frames per second of the decoded samples, or 0 until a supported format chunk has been read
+    double getSampleRate() {
+        return frame != null ? sampleRate : 0;
+    }
+
+    void update(byte[] buffer, int offset, int length) {
+        int end = offset + length;
+        while (offset < end && state != DONE) {
+            if (state == SKIP) {
+                int n = (int) Math.min(skip, end - offset);
+                skip -= n;
+                offset += n;
+                if (skip == 0) expect(CHUNK_HEADER, 8);
+            } else if (state == SAMPLES) {
+                offset = decode(buffer, offset, end);
+            } else {
+                int n = Math.min(needed - filled, end - offset);
+                System.arraycopy(buffer, offset, pending, filled, n);
+                filled += n;
+                offset += n;
+                if (filled == needed) parsed();
+            }
+        }
+    }
+
+    private void expect(int next, int size) {
+        state = next;
+        needed = size;
+        filled = 0;
+    }
+
+    private void parsed() {
+        switch (state) {
+            case FILE_HEADER -> {
+                String form = ascii(0);
+                String type = ascii(8);
+                if (form.equals("RIFF") && type.equals("WAVE")) {
+                    aiff = false;
+                } else if (form.equals("FORM") && (type.equals("AIFF") || type.equals("AIFC"))) {
+                    aiff = true;
+                    aifc = type.equals("AIFC");
+                } else {
+                    state = DONE;
+                    return;
+                }
+                expect(CHUNK_HEADER, 8);
+            }
+            case CHUNK_HEADER -> {
+                String id = ascii(0);
+                long size = aiff ? uint32BigEndian(4) : uint32LittleEndian(4);
+                boolean padded = (size & 1) != 0;
+                if (id.equals(aiff ? "COMM" : "fmt ")) {
+                    if (size > MAX_FORMAT_SIZE) {
+                        state = DONE;
+                        return;
+                    }
+                    formatPadded = padded;
+                    expect(FORMAT, (int) size);
+                    if (size == 0) parsed();
+                } else if (id.equals(aiff ? "SSND" : "data")) {
+                    if (frame == null || size < (aiff ? 8 : 0)) {
+                        state = DONE;
+                        return;
+                    }
+                    if (aiff) {
+                        remaining = size - 8;
+                        expect(SOUND_PREFIX, 8);
+                    } else {
+                        remaining = size;
+                        state = SAMPLES;
+                    }
+                } else {
+                    skip = size + (padded ? 1 : 0);
+                    state = SKIP;
+                    if (skip == 0) expect(CHUNK_HEADER, 8);
+                }
+            }
+            case FORMAT -> {
+                if (aiff ? readCommon() : readFormat()) {
+                    frame = new byte[channels * bytesPerSample];
+                }
+                skip = formatPadded ? 1 : 0;
+                state = SKIP;
+                if (skip == 0) expect(CHUNK_HEADER, 8);
+            }
+            case SOUND_PREFIX -> {
+                // Samples start this many bytes into the chunk's sample data
+                long offset = uint32BigEndian(0);
+                if (offset > remaining) {
+                    state = DONE;
+                    return;
+                }
+                skip = offset;
+                state = SAMPLES;
+            }
+            default -> state = DONE;
+        }
+    }
+
+    // WAV "fmt ": integer PCM of 8 to 32 bits or 32-bit float, possibly in the extensible layout
+    private boolean readFormat() {
+        if (filled < 16) return false;
+        int format = uint16LittleEndian(0);
+        if (format == 0xFFFE && filled >= 26) format = uint16LittleEndian(24);
+        channels = uint16LittleEndian(2);
+        sampleRate = uint32LittleEndian(4);
+        int bits = uint16LittleEndian(14);
+        littleEndian = true;
+        floating = format == 3;
+        bytesPerSample = (bits + 7) / 8;
+        if (format == 1) return supported(bytesPerSample >= 1 && bytesPerSample <= 4);
+        return supported(floating && bits == 32);
+    }
+
+    // AIFF "COMM": big-endian signed integer PCM; AIFF-C only when uncompressed ("NONE", or little-endian "sowt")
+    private boolean readCommon() {
+        if (filled < 18) return false;
+        channels = uint16BigEndian(0);
+        int bits = uint16BigEndian(6);
+        sampleRate = extended(8);
+        littleEndian = false;
+        floating = false;
+        bytesPerSample = (bits + 7) / 8;
+        if (aifc) {
+            if (filled < 22) return false;
+            String compression = ascii(18);
+            if (compression.equals("sowt")) {
+                littleEndian = true;
+            } else if (!compression.equals("NONE")) {
+                return false;
+            }
+        }
+        return supported(bytesPerSample >= 1 && bytesPerSample <= 4);
+    }
+
+    private boolean supported(boolean sampleFormat) {
+        return sampleFormat && channels > 0 && sampleRate >= 1000 && sampleRate <= 768000;
+    }
+
+    private int decode(byte[] buffer, int offset, int end) {
+        while (offset < end && remaining > 0) {
+            if (skip > 0) {
+                int n = (int) Math.min(skip, end - offset);
+                skip -= n;
+                remaining -= n;
+                offset += n;
+                continue;
+            }
+            int n = (int) Math.min(Math.min(frame.length - frameFilled, end - offset), remaining);
+            System.arraycopy(buffer, offset, frame, frameFilled, n);
+            frameFilled += n;
+            remaining -= n;
+            offset += n;
+            if (frameFilled == frame.length) {
+                frameFilled = 0;
+                if (!sink.accept(mixFrame())) {
+                    state = DONE;
+                    return end;
+                }
+            }
+        }
+        if (remaining == 0) state = DONE;
+        return offset;
+    }
+
+    private float mixFrame() {
+        float sum = 0;
+        for (int channel = 0; channel < channels; channel++) {
+            sum += sample(channel * bytesPerSample);
+        }
+        return sum / channels;
+    }
+
+    private float sample(int at) {
+        if (bytesPerSample == 1) {
+            // 8-bit WAV is unsigned, 8-bit AIFF signed
+            return aiff ? frame[at] / 128f : ((frame[at] & 0xFF) - 128) / 128f;
+        }
+        int value = 0;
+        for (int i = 0; i < bytesPerSample; i++) {
+            int b = frame[at + (littleEndian ? bytesPerSample - 1 - i : i)] & 0xFF;
+            value = (value << 8) | b;
+        }
+        if (floating) return Math.max(-1f, Math.min(1f, Float.intBitsToFloat(value)));
+        // Sign-extend to 32 bits, then scale the full range to [-1, 1)
+        int shift = 32 - 8 * bytesPerSample;
+        return (float) ((value << shift) / 2147483648.0);
+    }
+
+    private String ascii(int at) {
+        return new String(pending, at, 4, StandardCharsets.US_ASCII);
+    }
+
+    private int uint16LittleEndian(int at) {
+        return (pending[at] & 0xFF) | (pending[at + 1] & 0xFF) << 8;
+    }
+
+    private int uint16BigEndian(int at) {
+        return (pending[at] & 0xFF) << 8 | (pending[at + 1] & 0xFF);
+    }
+
+    private long uint32LittleEndian(int at) {
+        return (uint16LittleEndian(at) | (long) uint16LittleEndian(at + 2) << 16) & 0xFFFFFFFFL;
+    }
+
+    private long uint32BigEndian(int at) {
+        return ((long) uint16BigEndian(at) << 16 | uint16BigEndian(at + 2)) & 0xFFFFFFFFL;
+    }
+
+    // 80-bit IEEE extended precision, which AIFF uses for the sample rate
+    private double extended(int at) {
+        int exponent = ((pending[at] & 0x7F) << 8) | (pending[at + 1] & 0xFF);
+        long mantissa = 0;
+        for (int i = 0; i < 8; i++) {
+            mantissa = (mantissa << 8) | (pending[at + 2 + i] & 0xFF);
+        }
+        if (exponent == 0 && mantissa == 0) return 0;
+        double value = (mantissa >>> 1) * Math.pow(2, exponent - 16383 - 62);
+        return (pending[at] & 0x80) != 0 ? -value : value;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.appmanager.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+// Runs IN-list queries a bounded number of keys at a time, so a scan of hundreds of thousands of files does not send
+// one bind parameter per file in a single statement
+final class QueryBatches {
+    static final int BATCH_SIZE = 1000;
+
+    private QueryBatches() {
+    }
+
+    static <K, T> List<T> findIn(Collection<K> keys, Function<List<K>, List<T>> query) {
+        List<K> all = new ArrayList<>(keys);
+        List<T> found = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += BATCH_SIZE) {
+            found.addAll(query.apply(all.subList(from, Math.min(from + BATCH_SIZE, all.size()))));
+        }
+        return found;
+    }
+}
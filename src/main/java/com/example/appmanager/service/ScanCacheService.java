@@ -0,0 +1,136 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+import com.example.appmanager.model.ScanCacheEntry;
+import com.example.appmanager.repository.ScanCacheRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+@Service
+public class ScanCacheService {
+    @Autowired
+    private ScanCacheRepository scanCacheRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${appmanager.scan.cache.enabled:true}")
+    private boolean enabled;
+
+    // Loads every cached entry under the scan root so workers can look files up without hitting the database
+    public Session open(File root) {
+        Map<String, ScanCacheEntry> entries = new ConcurrentHashMap<>();
+        if (enabled) {
+            for (ScanCacheEntry entry : scanCacheRepository.findByPathStartingWith(root.getAbsolutePath() + File.separator)) {
+                entries.put(entry.getPath(), entry);
+            }
+        }
+        return new Session(enabled, entries);
+    }
+
+    // Loads the cached entries of individual files, e.g. those reported by the directory watcher
+    public Session openFiles(Collection<File> files) {
+        Map<String, ScanCacheEntry> entries = new ConcurrentHashMap<>();
+        if (enabled && !files.isEmpty()) {
+            List<String> paths = files.stream().map(File::getAbsolutePath).collect(Collectors.toList());
+            for (ScanCacheEntry entry : QueryBatches.findIn(paths, scanCacheRepository::findByPathIn)) {
+                entries.put(entry.getPath(), entry);
+            }
+        }
+        return new Session(enabled, entries);
+    }
+
+    // Stores new and changed entries and drops entries for files that were looked for but not found. Sessions can
+    // overlap, e.g. two jobs under one root or a job and a watcher flush, so commits are serialized and each entry
+    // takes over the row stored for its path by whichever session committed it first.
+    public void commit(Session session) {
+        if (!session.enabled) return;
+        List<ScanCacheEntry> stale = new ArrayList<>();
+        for (ScanCacheEntry entry : session.entries.values()) {
+            if (!session.seen.contains(entry.getPath())) {
+                stale.add(entry);
+            }
+        }
+        synchronized (this) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                Map<String, Long> storedIds = new HashMap<>();
+                List<String> paths = session.changed.stream().map(ScanCacheEntry::getPath).collect(Collectors.toList());
+                for (ScanCacheEntry stored : QueryBatches.findIn(paths, scanCacheRepository::findByPathIn)) {
+                    storedIds.put(stored.getPath(), stored.getId());
+                }
+                for (ScanCacheEntry entry : session.changed) {
+                    entry.setId(storedIds.get(entry.getPath()));
+                }
+                scanCacheRepository.saveAll(session.changed);
+                scanCacheRepository.deleteAllInBatch(stale);
+            });
+        }
+    }
+
+    // Cache state for one scan; safe to use from the scan workers
+    public static class Session {
+        private final boolean enabled;
+        private final Map<String, ScanCacheEntry> entries;
+        private final Set<String> seen = ConcurrentHashMap.newKeySet();
+        private final Set<ScanCacheEntry> changed = ConcurrentHashMap.newKeySet();
+
+        Session(boolean enabled, Map<String, ScanCacheEntry> entries) {
+            this.enabled = enabled;
+            this.entries = entries;
+        }
+
+        // Fills in the cached features and returns true when the file is unchanged since it was cached
+        // with one of the given hash algorithms
+        public boolean restore(ApplicationFile appFile, BasicFileAttributes attrs, Collection<String> hashAlgorithms) {
+            if (!enabled) return false;
+            seen.add(appFile.getPath());
+            ScanCacheEntry entry = entries.get(appFile.getPath());
+            if (entry == null || !entry.matches(attrs.size(), attrs.lastModifiedTime().toMillis(), fileKey(attrs), hashAlgorithms)) {
+                return false;
+            }
+            entry.applyTo(appFile);
+            return true;
+        }
+
+        public void record(ApplicationFile appFile, BasicFileAttributes attrs) {
+            if (!enabled) return;
+            ScanCacheEntry entry = entries.getOrDefault(appFile.getPath(), new ScanCacheEntry());
+            entry.setPath(appFile.getPath());
+            entry.setSize(attrs.size());
+            entry.setLastModified(attrs.lastModifiedTime().toMillis());
+            entry.setFileKey(fileKey(attrs));
+            entry.capture(appFile);
+            entries.put(entry.getPath(), entry);
+            changed.add(entry);
+        }
+
+        // Keeps the SHA-256 that confirmed a fast-hash collision, so later scans need not read the file again
+        public void confirm(ApplicationFile appFile) {
+            if (!enabled) return;
+            seen.add(appFile.getPath());
+            ScanCacheEntry entry = entries.get(appFile.getPath());
+            if (entry != null && entry.getHash().equals(appFile.getHash())) {
+                entry.setConfirmedHash(appFile.getConfirmedHash());
+                changed.add(entry);
+            }
+        }
+
+        private static String fileKey(BasicFileAttributes attrs) {
+            Object key = attrs.fileKey();
+            return key != null ? key.toString() : "";
+        }
+    }
+}
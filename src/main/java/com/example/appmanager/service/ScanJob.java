@@ -0,0 +1,74 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+
+import java.util.List;
+import java.util.UUID;
+
+// One submitted directory scan, from queueing to its stored results
+public class ScanJob {
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String owner;
+    private final String directory;
+    private final boolean exactOnly;
+    private final boolean watch;
+    private final List<String> categories;
+    private final ScanOptions options;
+    private final ScanProgress progress = new ScanProgress();
+    private volatile Status status = Status.QUEUED;
+    private volatile List<ApplicationFile> files;
+    private volatile String error;
+    private volatile long finishedAt;
+
+    public ScanJob(String owner, String directory, ScanOptions options, boolean exactOnly, boolean watch,
+                   List<String> categories) {
+        this.owner = owner;
+        this.directory = directory;
+        this.options = options;
+        this.exactOnly = exactOnly;
+        this.watch = watch;
+        this.categories = categories;
+    }
+
+    void start() {
+        status = Status.RUNNING;
+    }
+
+    void complete(List<ApplicationFile> files) {
+        this.files = files;
+        finish(Status.COMPLETED);
+    }
+
+    void fail(String error) {
+        this.error = error;
+        finish(Status.FAILED);
+    }
+
+    void cancelled() {
+        finish(Status.CANCELLED);
+    }
+
+    private void finish(Status status) {
+        finishedAt = System.currentTimeMillis();
+        this.status = status;
+    }
+
+    public boolean isFinished() {
+        return status != Status.QUEUED && status != Status.RUNNING;
+    }
+
+    public String getId() { return id; }
+    public String getOwner() { return owner; }
+    public String getDirectory() { return directory; }
+    public ScanOptions getOptions() { return options; }
+    public boolean isExactOnly() { return exactOnly; }
+    public boolean isWatch() { return watch; }
+    public List<String> getCategories() { return categories; }
+    public ScanProgress getProgress() { return progress; }
+    public Status getStatus() { return status; }
+    public List<ApplicationFile> getFiles() { return files; }
+    public String getError() { return error; }
+    public long getFinishedAt() { return finishedAt; }
+}
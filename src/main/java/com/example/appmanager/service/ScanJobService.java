@@ -0,0 +1,255 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs directory scans in the background on a bounded pool, taking queued jobs from users in turn
+@Service
+public class ScanJobService {
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
+    @Autowired
+    private FileScannerService fileScannerService;
+    @Autowired
+    private FileCatalogService fileCatalogService;
+    @Autowired
+    private DirectoryWatchService directoryWatchService;
+    @Autowired
+    private DuplicateGroupService duplicateGroupService;
+
+    @Value("${appmanager.scan.jobs.concurrency:2}")
+    private int concurrency;
+    @Value("${appmanager.scan.jobs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private final Map<String, ScanJob> jobs = new ConcurrentHashMap<>();
+    // Queued jobs per user, in the order users get their next turn; guarded by itself
+    private final LinkedHashMap<String, Deque<ScanJob>> queues = new LinkedHashMap<>();
+    private int running;
+    private final Map<SseEmitter, ScanJob> subscribers = new ConcurrentHashMap<>();
+    private ExecutorService jobPool;
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    void start() {
+        AtomicInteger counter = new AtomicInteger();
+        jobPool = Executors.newFixedThreadPool(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "scan-job-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scan-job-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, PROGRESS_INTERVAL_MILLIS, PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        ticker.shutdownNow();
+        jobPool.shutdownNow();
+    }
+
+    public ScanJob submit(ScanJob job) {
+        jobs.put(job.getId(), job);
+        synchronized (queues) {
+            queues.computeIfAbsent(job.getOwner(), owner -> new ArrayDeque<>()).add(job);
+        }
+        dispatch();
+        return job;
+    }
+
+    // Jobs are only visible to the user who submitted them
+    public ScanJob getJob(String id, String owner) {
+        ScanJob job = jobs.get(id);
+        return job != null && job.getOwner().equals(owner) ? job : null;
+    }
+
+    public void cancel(ScanJob job) {
+        job.getProgress().cancel();
+        synchronized (queues) {
+            Deque<ScanJob> queue = queues.get(job.getOwner());
+            if (queue != null && queue.remove(job)) {
+                if (queue.isEmpty()) queues.remove(job.getOwner());
+                job.cancelled();
+            }
+        }
+    }
+
+    public SseEmitter subscribe(ScanJob job) {
+        SseEmitter emitter = new SseEmitter(0L);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        subscribers.put(emitter, job);
+        send(emitter, job);
+        return emitter;
+    }
+
+    // Starts queued jobs while there are free slots, one job per user per turn
+    private void dispatch() {
+        synchronized (queues) {
+            while (running < Math.max(1, concurrency) && !queues.isEmpty()) {
+                Iterator<Map.Entry<String, Deque<ScanJob>>> turn = queues.entrySet().iterator();
+                Map.Entry<String, Deque<ScanJob>> next = turn.next();
+                ScanJob job = next.getValue().poll();
+                turn.remove();
+                if (!next.getValue().isEmpty()) {
+                    queues.put(next.getKey(), next.getValue());
+                }
+                running++;
+                jobPool.execute(() -> run(job));
+            }
+        }
+    }
+
+    private void run(ScanJob job) {
+        boolean holding = false;
+        boolean newlyWatched = false;
+        boolean stored = false;
+        try {
+            job.start();
+            // Keep the catalog for this directory current as files change; watching starts before the walk so changes
+            // made during it are applied once the scan is stored
+            if (job.isWatch()) {
+                newlyWatched = directoryWatchService.watchAndHold(job.getDirectory(), job.getOptions());
+                holding = true;
+            }
+            ScanProgress progress = job.getProgress();
+            List<ApplicationFile> files = job.isExactOnly()
+                    ? fileScannerService.scanForExactDuplicates(job.getDirectory(), job.getOptions(), progress)
+                    : fileScannerService.scanDirectory(job.getDirectory(), job.getOptions(), progress);
+            progress.checkCancelled();
+
+            // Apply categorization if enabled
+            if (job.getCategories() != null && !job.getCategories().isEmpty()) {
+                categorizeAndOrganizeFiles(files, job.getDirectory(), job.getCategories());
+            }
+
+            List<ApplicationFile> removed = new ArrayList<>();
+            List<ApplicationFile> saved = fileCatalogService.replaceUnder(new File(job.getDirectory()), files, removed);
+            stored = true;
+            duplicateGroupService.update(saved, removed);
+            // Rows of other paths that gained a confirmation follow the scanned ones
+            files = saved.subList(0, files.size());
+            job.complete(files);
+        } catch (CancellationException e) {
+            job.cancelled();
+        } catch (Exception e) {
+            System.err.println("Scan job " + job.getId() + " failed: " + e.getMessage());
+            job.fail(e.getMessage());
+        } finally {
+            if (holding) {
+                directoryWatchService.release(job.getDirectory());
+                // A directory first watched for a job that stored nothing is not left watched
+                if (!stored && newlyWatched) directoryWatchService.unwatch(job.getDirectory());
+            }
+            synchronized (queues) {
+                running--;
+            }
+            dispatch();
+        }
+    }
+
+    private void tick() {
+        for (Map.Entry<SseEmitter, ScanJob> subscriber : subscribers.entrySet()) {
+            send(subscriber.getKey(), subscriber.getValue());
+        }
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() < cutoff);
+    }
+
+    private void send(SseEmitter emitter, ScanJob job) {
+        ScanProgress progress = job.getProgress();
+        Map<String, Object> event = new HashMap<>();
+        event.put("status", job.getStatus());
+        event.put("filesDiscovered", progress.getFilesDiscovered());
+        event.put("filesScanned", progress.getFilesScanned());
+        event.put("bytesScanned", progress.getBytesScanned());
+        event.put("error", job.getError());
+        try {
+            emitter.send(SseEmitter.event().name("progress").data(event));
+            if (job.isFinished()) {
+                subscribers.remove(emitter);
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away
+            subscribers.remove(emitter);
+        }
+    }
+
+    private void categorizeAndOrganizeFiles(List<ApplicationFile> files, String baseDirectory, List<String> categories) {
+        // Define file extensions for each category
+        Map<String, List<String>> categoryExtensions = new HashMap<>();
+        categoryExtensions.put("photos", Arrays.asList("jpg", "jpeg", "png", "gif", "bmp", "tiff", "webp"));
+        categoryExtensions.put("documents", Arrays.asList("doc", "docx", "pdf", "txt", "rtf", "odt", "pages"));
+        categoryExtensions.put("videos", Arrays.asList("mp4", "avi", "mov", "mkv", "wmv", "flv", "webm"));
+        categoryExtensions.put("music", Arrays.asList("mp3", "wav", "flac", "aac", "ogg", "wma"));
+        categoryExtensions.put("archives", Arrays.asList("zip", "rar", "7z", "tar", "gz", "bz2"));
+        categoryExtensions.put("applications", Arrays.asList("exe", "msi", "apk", "jar", "dmg", "deb", "rpm"));
+
+        // Create category folders and move files
+        for (String category : categories) {
+            if (categoryExtensions.containsKey(category)) {
+                String categoryFolder = baseDirectory + File.separator + category;
+                File folder = new File(categoryFolder);
+                if (!folder.exists()) {
+                    folder.mkdirs();
+                }
+
+                List<String> extensions = categoryExtensions.get(category);
+                for (ApplicationFile file : files) {
+                    String fileExtension = getFileExtension(file.getName()).toLowerCase();
+                    if (extensions.contains(fileExtension)) {
+                        try {
+                            File sourceFile = new File(file.getPath());
+                            File destFile = new File(categoryFolder + File.separator + file.getName());
+
+                            // Only move if file exists and destination doesn't exist
+                            if (sourceFile.exists() && !destFile.exists()) {
+                                java.nio.file.Files.move(sourceFile.toPath(), destFile.toPath());
+                                // Update the file path in our model
+                                file.setPath(destFile.getAbsolutePath());
+                            }
+                        } catch (Exception e) {
+                            // Log error but continue with other files
+                            System.err.println("Error moving file " + file.getName() + ": " + e.getMessage());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private String getFileExtension(String fileName) {
+        int lastDot = fileName.lastIndexOf('.');
+        return (lastDot == -1) ? "" : fileName.substring(lastDot + 1);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.appmanager.service;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+// Filters applied while a directory tree is walked. Globs are matched against the entry name and against its
+// path relative to the scanned root, so "node_modules", "*.log" and "build/**" all work as expected.
+public class ScanOptions {
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final long minSize;
+    private final boolean skipHidden;
+
+    public ScanOptions(String includeGlobs, String excludeGlobs, long minSize, boolean skipHidden) {
+        this.includes = matchers(includeGlobs);
+        this.excludes = matchers(excludeGlobs);
+        this.minSize = minSize;
+        this.skipHidden = skipHidden;
+    }
+
+    // Everything, as scans behaved before filters existed
+    public static ScanOptions all() {
+        return new ScanOptions(null, null, 0, false);
+    }
+
+    // Whether a directory below the root is left out together with everything under it
+    boolean prunes(Path relative, Path dir) {
+        return (skipHidden && isHidden(relative, dir)) || matchesAny(excludes, relative);
+    }
+
+    boolean accepts(Path relative, Path file, BasicFileAttributes attrs) {
+        if (!attrs.isRegularFile() || attrs.size() < minSize) return false;
+        if (skipHidden && isHidden(relative, file)) return false;
+        if (matchesAny(excludes, relative)) return false;
+        return includes.isEmpty() || matchesAny(includes, relative);
+    }
+
+    private static boolean isHidden(Path relative, Path path) {
+        if (relative.getFileName().toString().startsWith(".")) return true;
+        try {
+            return Files.isHidden(path);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path relative) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relative.getFileName()) || matcher.matches(relative)) return true;
+        }
+        return false;
+    }
+
+    // Comma or newline separated globs; blanks are ignored
+    private static List<PathMatcher> matchers(String globs) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        if (globs == null) return matchers;
+        for (String glob : globs.split("[,\\n]")) {
+            if (!glob.isBlank()) {
+                matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob.trim()));
+            }
+        }
+        return matchers;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.appmanager.service;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Live counters of a running scan, shared between the scanner threads and whoever reports on it
+public class ScanProgress {
+    private final AtomicLong filesDiscovered = new AtomicLong();
+    private final AtomicLong filesScanned = new AtomicLong();
+    private final AtomicLong bytesScanned = new AtomicLong();
+    private volatile boolean cancelled;
+
+    void fileDiscovered() {
+        filesDiscovered.incrementAndGet();
+    }
+
+    void fileScanned() {
+        filesScanned.incrementAndGet();
+    }
+
+    void bytesScanned(long bytes) {
+        bytesScanned.addAndGet(bytes);
+    }
+
+    // Scanner threads call this between files so a cancelled scan stops at the next file boundary
+    void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Scan was cancelled");
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public long getFilesDiscovered() {
+        return filesDiscovered.get();
+    }
+
+    public long getFilesScanned() {
+        return filesScanned.get();
+    }
+
+    public long getBytesScanned() {
+        return bytesScanned.get();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+
+// A catalog file found similar to a queried one, with the score the pair was given
+public class SimilarFile {
+    private final Long id;
+    private final String path;
+    private final String name;
+    private final String fileType;
+    private final long size;
+    private final double similarity;
+    private final boolean exact;
+
+    SimilarFile(ApplicationFile file, double similarity, boolean exact) {
+        this.id = file.getId();
+        this.path = file.getPath();
+        this.name = file.getName();
+        this.fileType = file.getFileType();
+        this.size = file.getSize();
+        this.similarity = similarity;
+        this.exact = exact;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    // Same content hash, as opposed to scored as similar
+    public boolean isExact() {
+        return exact;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.appmanager.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Scores of file pairs that have been compared before, keyed by what the score depends on rather than by path, so
+// moved and rescanned files keep their scores. Entries are spread over independently locked segments, each evicting
+// its least recently used entry once full, so scoring threads rarely wait on each other.
+final class SimilarityCache {
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // A capacity of zero or less keeps nothing
+    SimilarityCache(int capacity) {
+        segments = new Segment[SEGMENTS];
+        int perSegment = capacity <= 0 ? 0 : Math.max(1, (capacity + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    // The cached score of the pair, or the computed one. Scores are kept in the order the files were given, since
+    // some are not symmetric; a NaN score is returned without being kept.
+    double get(String keyA, String keyB, Supplier<Double> score) {
+        String key = keyA + '\n' + keyB;
+        Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+        if (segment.capacity == 0) {
+            return score.get();
+        }
+        Double cached;
+        synchronized (segment) {
+            cached = segment.get(key);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        // Scored outside the lock; two threads missing on the same pair both score it and store the same value
+        double computed = score.get();
+        if (!Double.isNaN(computed)) {
+            synchronized (segment) {
+                segment.put(key, computed);
+            }
+        }
+        return computed;
+    }
+
+    // The cached score of the pair, or null; counts as a hit only when found
+    Double peek(String keyA, String keyB) {
+        String key = keyA + '\n' + keyB;
+        Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+        Double cached;
+        synchronized (segment) {
+            cached = segment.get(key);
+        }
+        if (cached != null) hits.incrementAndGet();
+        return cached;
+    }
+
+    void put(String keyA, String keyB, double score) {
+        String key = keyA + '\n' + keyB;
+        Segment segment = segments[(key.hashCode() & 0x7fffffff) % SEGMENTS];
+        if (segment.capacity == 0 || Double.isNaN(score)) return;
+        synchronized (segment) {
+            segment.put(key, score);
+        }
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getEvictions() {
+        return evictions.get();
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private final class Segment extends LinkedHashMap<String, Double> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Double> eldest) {
+            if (size() <= capacity) return false;
+            evictions.incrementAndGet();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.appmanager.service;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Bounded summary of the words of a text file, built while the scan streams it and stored with the file, so text
+// similarity never goes back to the file: the leading words in order, as 32-bit word hashes, for edit distance, and
+// the distinct words with the smallest 64-bit hashes, each with its count over the whole file, for cosine and
+// Jaccard. Past those bounds a profile is a sample, a few dozen kilobytes whatever the size of the file. Two samples
+// are compared on the hash range both of them cover, which keeps the same words on each side.
+final class TextProfile {
+    static final int MAX_SEQUENCE = 4096;
+    static final int MAX_DISTINCT = 1024;
+
+    private final int[] sequence;
+    private final long[] distinct;
+    private final int[] counts;
+    // Largest hash the distinct words cover; Long.MAX_VALUE when they are all of the file's words
+    private final long coveredUpTo;
+
+    private TextProfile(int[] sequence, long[] distinct, int[] counts, long coveredUpTo) {
+        this.sequence = sequence;
+        this.distinct = distinct;
+        this.counts = counts;
+        this.coveredUpTo = coveredUpTo;
+    }
+
+    // Collects the profile of a text from its words, fed in order
+    static final class Builder {
+        private final int[] sequence = new int[MAX_SEQUENCE];
+        private int sequenceLength = 0;
+        // The smallest distinct hashes seen; once full, a hash above the largest of them can never get in, since
+        // that largest one only goes down
+        private final TreeMap<Long, Integer> distinct = new TreeMap<>();
+        private boolean sampled = false;
+        private long largest = Long.MIN_VALUE;
+
+        void add(char[] word, int length) {
+            long hash = hashOf(word, length);
+            if (sequenceLength < MAX_SEQUENCE) sequence[sequenceLength++] = (int) (hash >>> 32);
+            if (distinct.size() == MAX_DISTINCT && hash > largest) return;
+            if (distinct.merge(hash, 1, Integer::sum) == 1 && distinct.size() > MAX_DISTINCT) {
+                distinct.pollLastEntry();
+                sampled = true;
+            }
+            largest = distinct.lastKey();
+        }
+
+        byte[] digest() {
+            ByteBuffer bytes = ByteBuffer.allocate(9 + sequenceLength * 4 + distinct.size() * 12);
+            bytes.put((byte) (sampled ? 1 : 0));
+            bytes.putInt(sequenceLength);
+            for (int i = 0; i < sequenceLength; i++) {
+                bytes.putInt(sequence[i]);
+            }
+            bytes.putInt(distinct.size());
+            for (Map.Entry<Long, Integer> entry : distinct.entrySet()) {
+                bytes.putLong(entry.getKey());
+                bytes.putInt(entry.getValue());
+            }
+            return bytes.array();
+        }
+    }
+
+    // The stored profile, or null when there is none or it does not parse
+    static TextProfile of(byte[] digest) {
+        if (digest.length < 9) return null;
+        ByteBuffer bytes = ByteBuffer.wrap(digest);
+        boolean sampled = bytes.get() == 1;
+        int sequenceLength = bytes.getInt();
+        if (sequenceLength < 0 || sequenceLength > MAX_SEQUENCE || bytes.remaining() < sequenceLength * 4L + 4) return null;
+        int[] sequence = new int[sequenceLength];
+        bytes.asIntBuffer().get(sequence);
+        bytes.position(bytes.position() + sequenceLength * 4);
+        int size = bytes.getInt();
+        if (size < 0 || size > MAX_DISTINCT || bytes.remaining() != size * 12) return null;
+        long[] distinct = new long[size];
+        int[] counts = new int[size];
+        for (int i = 0; i < size; i++) {
+            distinct[i] = bytes.getLong();
+            counts[i] = bytes.getInt();
+        }
+        return new TextProfile(sequence, distinct, counts, sampled && size > 0 ? distinct[size - 1] : Long.MAX_VALUE);
+    }
+
+    double jaccard(TextProfile other) {
+        long limit = Math.min(coveredUpTo, other.coveredUpTo);
+        int shared = 0;
+        int union = 0;
+        for (int i = 0, j = 0; ; ) {
+            boolean left = i < distinct.length && distinct[i] <= limit;
+            boolean right = j < other.distinct.length && other.distinct[j] <= limit;
+            if (!left && !right) break;
+            union++;
+            if (left && right && distinct[i] == other.distinct[j]) {
+                shared++;
+                i++;
+                j++;
+            } else if (!right || (left && distinct[i] < other.distinct[j])) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return union == 0 ? 0.0 : (double) shared / union;
+    }
+
+    // Cosine similarity of the word frequency vectors
+    double cosine(TextProfile other) {
+        long limit = Math.min(coveredUpTo, other.coveredUpTo);
+        double dotProduct = 0;
+        for (int i = 0, j = 0; i < distinct.length && j < other.distinct.length; ) {
+            if (distinct[i] == other.distinct[j]) {
+                if (distinct[i] > limit) break;
+                dotProduct += (double) counts[i++] * other.counts[j++];
+            } else if (distinct[i] < other.distinct[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        double norm = norm(limit) * other.norm(limit);
+        return norm == 0 ? 0.0 : dotProduct / norm;
+    }
+
+    private double norm(long limit) {
+        double sumOfSquares = 0;
+        for (int i = 0; i < distinct.length && distinct[i] <= limit; i++) {
+            sumOfSquares += (double) counts[i] * counts[i];
+        }
+        return Math.sqrt(sumOfSquares);
+    }
+
+    // 1 - (word-level edit distance / longer word count) over the leading words, or -1 once the result is known to
+    // fall below minSimilarity
+    double editSimilarity(TextProfile other, double minSimilarity) {
+        int[] a = sequence.length <= other.sequence.length ? sequence : other.sequence;
+        int[] b = a == sequence ? other.sequence : sequence;
+        int m = b.length;
+        if (m == 0) return 1.0;
+        int maxDistance = (int) Math.floor((1.0 - Math.max(0.0, minSimilarity)) * m);
+        int distance = boundedDistance(a, b, maxDistance);
+        return distance > maxDistance ? -1 : 1.0 - (double) distance / m;
+    }
+
+    // Edit distance between a and the longer b, or maxDistance + 1 once it is known to be larger. Bit-parallel
+    // (Myers, in Hyyro's blocked form): each column of the dynamic programming table is kept as the signs of its
+    // vertical differences, 64 rows to a word, and advanced over a word of b with a few word operations per block of
+    // a. Time is (length of a / 64) * length of b whatever the distance, and it stops once the columns left cannot
+    // bring the distance back under the bound.
+    private static int boundedDistance(int[] a, int[] b, int maxDistance) {
+        int n = a.length;
+        int m = b.length;
+        if (m - n > maxDistance) return maxDistance + 1;
+        if (n == 0) return m;
+        int blocks = (n + 63) >>> 6;
+        // Bits of the rows of a holding each word
+        Map<Integer, long[]> equal = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            equal.computeIfAbsent(a[i], word -> new long[blocks])[i >>> 6] |= 1L << (i & 63);
+        }
+        long[] none = new long[blocks];
+        long[] plus = new long[blocks];
+        long[] minus = new long[blocks];
+        Arrays.fill(plus, -1L);
+        long lastRow = 1L << ((n - 1) & 63);
+        int distance = n;
+        for (int j = 0; j < m; j++) {
+            long[] eqs = equal.getOrDefault(b[j], none);
+            // The top row grows by one per column
+            int carry = 1;
+            for (int block = 0; block < blocks; block++) {
+                long pv = plus[block];
+                long mv = minus[block];
+                long eq = eqs[block];
+                long xv = eq | mv;
+                if (carry < 0) eq |= 1L;
+                long xh = (((eq & pv) + pv) ^ pv) | eq;
+                long ph = mv | ~(xh | pv);
+                long mh = pv & xh;
+                long bottom = block == blocks - 1 ? lastRow : Long.MIN_VALUE;
+                int out = (ph & bottom) != 0 ? 1 : (mh & bottom) != 0 ? -1 : 0;
+                ph <<= 1;
+                mh <<= 1;
+                if (carry < 0) {
+                    mh |= 1L;
+                } else if (carry > 0) {
+                    ph |= 1L;
+                }
+                plus[block] = mh | ~(xv | ph);
+                minus[block] = ph & xv;
+                carry = out;
+            }
+            distance += carry;
+            if (distance - (m - j - 1) > maxDistance) return maxDistance + 1;
+        }
+        return distance;
+    }
+
+    // FNV-1a of the word, mixed so that the smallest hashes are an even sample of the words
+    private static long hashOf(char[] word, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ word[i]) * 0x100000001b3L;
+        }
+        return MinHash.mix(hash);
+    }
+}
@@ -0,0 +1,413 @@
+package com.example.appmanager.service;
+
+import com.example.appmanager.model.ApplicationFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Set;
+
+// Duration, resolution, codec and frame count of the video stream of an MP4/MOV, Matroska/WebM or AVI file, read
+// from the container headers alone. Boxes, elements and chunks outside the few that describe the stream are stepped
+// over by their sizes rather than read, so a file costs a few kilobytes of reads wherever its index sits. The
+// container is recognized by its signature; other files, and streams the headers do not describe, give nothing.
+final class VideoHeader {
+    // Header elements read whole at most; the stream descriptions are far smaller
+    private static final int MAX_ELEMENT_SIZE = 64 * 1024;
+    // Boxes, elements or chunks stepped over at most before a file is taken to be malformed
+    private static final int MAX_ENTRIES = 10000;
+    private static final Set<String> BOX_CONTAINERS = Set.of("moov", "trak", "mdia", "minf", "stbl");
+    private static final Set<String> TOP_LEVEL_BOXES = Set.of("ftyp", "moov", "mdat", "free", "skip", "wide", "pnot");
+
+    private long durationMillis;
+    private int width;
+    private int height;
+    private String codec = "";
+    private long frameCount;
+
+    // While walking an MP4 track: whether it is video, and its sample count and description
+    private boolean videoTrack;
+    private long trackSamples;
+    private String trackCodec = "";
+    private int trackWidth;
+    private int trackHeight;
+
+    private VideoHeader() {
+    }
+
+    // The video stream of the file, or null when it is not in a recognized container or describes no video
+    static VideoHeader read(File file) throws IOException {
+        VideoHeader header = new VideoHeader();
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long length = in.length();
+            if (length < 12) return null;
+            byte[] signature = new byte[12];
+            read(in, 0, signature, 12);
+            if (ascii(signature, 0, 4).equals("RIFF") && ascii(signature, 8, 4).equals("AVI ")) {
+                header.readAvi(in, length);
+            } else if (uint32BigEndian(signature, 0) == 0x1A45DFA3L) {
+                header.readMatroska(in, length);
+            } else if (TOP_LEVEL_BOXES.contains(ascii(signature, 4, 4))) {
+                header.readBoxes(in, 0, length, 0);
+            } else {
+                return null;
+            }
+        }
+        return header.durationMillis > 0 || header.width > 0 ? header : null;
+    }
+
+    void applyTo(ApplicationFile appFile) {
+        appFile.setVideoDuration(durationMillis);
+        appFile.setVideoWidth(width);
+        appFile.setVideoHeight(height);
+        appFile.setVideoCodec(codec);
+        appFile.setVideoFrames(frameCount);
+    }
+
+    // ISO base media (MP4, MOV, 3GP): movie duration from mvhd; resolution, codec and sample count from the first
+    // track whose handler is video
+    private void readBoxes(RandomAccessFile in, long position, long end, int depth) throws IOException {
+        byte[] header = new byte[16];
+        for (int n = 0; n < MAX_ENTRIES && position + 8 <= end; n++) {
+            read(in, position, header, 8);
+            long size = uint32BigEndian(header, 0);
+            String type = ascii(header, 4, 4);
+            int headerSize = 8;
+            if (size == 1) {
+                if (position + 16 > end) return;
+                read(in, position + 8, header, 8);
+                size = uint64BigEndian(header, 0);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) return;
+            long body = position + headerSize;
+            long bodySize = size - headerSize;
+            if (BOX_CONTAINERS.contains(type) && depth < 8) {
+                if (type.equals("trak")) startTrack();
+                readBoxes(in, body, position + size, depth + 1);
+                if (type.equals("trak")) endTrack();
+            } else if (bodySize <= MAX_ELEMENT_SIZE || type.equals("stsd")) {
+                readBox(in, type, body, bodySize);
+            }
+            position += size;
+        }
+    }
+
+    private void readBox(RandomAccessFile in, String type, long body, long bodySize) throws IOException {
+        switch (type) {
+            case "mvhd" -> {
+                byte[] box = read(in, body, bodySize, 32);
+                if (box == null) return;
+                // Version 1 widens the times and duration to 64 bits
+                boolean wide = box[0] == 1;
+                long timescale = uint32BigEndian(box, wide ? 20 : 12);
+                long duration = wide ? uint64BigEndian(box, 24) : uint32BigEndian(box, 16);
+                if (timescale > 0) durationMillis = duration * 1000 / timescale;
+            }
+            case "hdlr" -> {
+                byte[] box = read(in, body, bodySize, 12);
+                if (box != null && ascii(box, 8, 4).equals("vide")) videoTrack = true;
+            }
+            case "tkhd" -> {
+                byte[] box = read(in, body, bodySize, 84);
+                if (box == null) return;
+                // 16.16 fixed-point display size at the end of the box
+                int at = box[0] == 1 ? 88 : 76;
+                if (box.length < at + 8) return;
+                trackWidth = (int) (uint32BigEndian(box, at) >>> 16);
+                trackHeight = (int) (uint32BigEndian(box, at + 4) >>> 16);
+            }
+            case "stsd" -> {
+                // The first sample entry: its format, and for visual entries the coded size
+                byte[] box = read(in, body, Math.min(bodySize, 64), 16);
+                if (box == null) return;
+                trackCodec = ascii(box, 12, 4);
+                if (box.length >= 8 + 36) {
+                    int codedWidth = uint16BigEndian(box, 8 + 32);
+                    int codedHeight = uint16BigEndian(box, 8 + 34);
+                    if (codedWidth > 0 && codedHeight > 0) {
+                        trackWidth = codedWidth;
+                        trackHeight = codedHeight;
+                    }
+                }
+            }
+            case "stsz", "stz2" -> {
+                byte[] box = read(in, body, Math.min(bodySize, 12), 12);
+                if (box != null) trackSamples = uint32BigEndian(box, 8);
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void startTrack() {
+        videoTrack = false;
+        trackSamples = 0;
+        trackCodec = "";
+        trackWidth = 0;
+        trackHeight = 0;
+    }
+
+    private void endTrack() {
+        if (!videoTrack || !codec.isEmpty()) return;
+        codec = normalizeCodec(trackCodec);
+        width = trackWidth;
+        height = trackHeight;
+        frameCount = trackSamples;
+    }
+
+    // Matroska and WebM: Info and Tracks sit ahead of the clusters in the Segment
+    private void readMatroska(RandomAccessFile in, long length) throws IOException {
+        long position = 0;
+        long timecodeScale = 1_000_000;
+        double duration = 0;
+        long defaultDuration = 0;
+        boolean info = false;
+        boolean tracks = false;
+        byte[] header = new byte[16];
+        for (int n = 0; n < MAX_ENTRIES && position < length && !(info && tracks); n++) {
+            int headerLength = (int) Math.min(12, length - position);
+            read(in, position, header, headerLength);
+            Ebml element = new Ebml(header, 0, headerLength);
+            long id = element.id();
+            long size = element.size();
+            if (id < 0 || size == -2) return;
+            long body = position + element.position;
+            if (id == 0x18538067L) {
+                // Segment: its children follow
+                position = body;
+                continue;
+            }
+            if (id == 0x1F43B675L || size < 0) return;
+            if (id == 0x1549A966L && size <= MAX_ELEMENT_SIZE) {
+                Ebml children = new Ebml(read(in, body, size, 0), 0, (int) size);
+                while (children.next()) {
+                    if (children.elementId == 0x2AD7B1L) timecodeScale = children.unsigned();
+                    if (children.elementId == 0x4489L) duration = children.floating();
+                }
+                info = true;
+            } else if (id == 0x1654AE6BL && size <= MAX_ELEMENT_SIZE) {
+                Ebml entries = new Ebml(read(in, body, size, 0), 0, (int) size);
+                while (entries.next() && codec.isEmpty()) {
+                    if (entries.elementId == 0xAEL) defaultDuration = readTrackEntry(entries.children());
+                }
+                tracks = true;
+            }
+            position = body + size;
+        }
+        if (duration > 0) durationMillis = Math.round(duration * timecodeScale / 1_000_000);
+        if (defaultDuration > 0 && durationMillis > 0) {
+            frameCount = Math.round(durationMillis * 1_000_000.0 / defaultDuration);
+        }
+    }
+
+    // Takes the entry's description when it is a video track, returning its frame duration in nanoseconds
+    private long readTrackEntry(Ebml entry) {
+        long type = 0;
+        String codecId = "";
+        long defaultDuration = 0;
+        int pixelWidth = 0;
+        int pixelHeight = 0;
+        while (entry.next()) {
+            if (entry.elementId == 0x83L) type = entry.unsigned();
+            if (entry.elementId == 0x86L) codecId = entry.string();
+            if (entry.elementId == 0x23E383L) defaultDuration = entry.unsigned();
+            if (entry.elementId == 0xE0L) {
+                Ebml video = entry.children();
+                while (video.next()) {
+                    if (video.elementId == 0xB0L) pixelWidth = (int) video.unsigned();
+                    if (video.elementId == 0xBAL) pixelHeight = (int) video.unsigned();
+                }
+            }
+        }
+        if (type != 1) return 0;
+        codec = normalizeCodec(codecId);
+        width = pixelWidth;
+        height = pixelHeight;
+        return defaultDuration;
+    }
+
+    // AVI: the main header and the stream headers all sit in the leading hdrl list
+    private void readAvi(RandomAccessFile in, long length) throws IOException {
+        byte[] header = new byte[12];
+        long position = 12;
+        for (int n = 0; n < MAX_ENTRIES && position + 12 <= length; n++) {
+            read(in, position, header, 12);
+            long size = uint32LittleEndian(header, 4);
+            if (ascii(header, 0, 4).equals("LIST") && ascii(header, 8, 4).equals("hdrl")) {
+                if (size > MAX_ELEMENT_SIZE || position + 8 + size > length) return;
+                byte[] list = read(in, position + 12, size - 4, 0);
+                readAviChunks(list, 0, list.length);
+                return;
+            }
+            position += 8 + size + (size & 1);
+        }
+    }
+
+    private void readAviChunks(byte[] list, int position, int end) {
+        String streamType = "";
+        while (position + 8 <= end) {
+            String id = ascii(list, position, 4);
+            int size = (int) Math.min(uint32LittleEndian(list, position + 4), end - position - 8);
+            int body = position + 8;
+            if (id.equals("avih") && size >= 40) {
+                long microsPerFrame = uint32LittleEndian(list, body);
+                long totalFrames = uint32LittleEndian(list, body + 16);
+                width = (int) uint32LittleEndian(list, body + 32);
+                height = (int) uint32LittleEndian(list, body + 36);
+                frameCount = totalFrames;
+                durationMillis = totalFrames * microsPerFrame / 1000;
+            } else if (id.equals("LIST") && size >= 4 && ascii(list, body, 4).equals("strl")) {
+                readAviChunks(list, body + 4, body + size);
+            } else if (id.equals("strh") && size >= 8) {
+                streamType = ascii(list, body, 4);
+                if (streamType.equals("vids") && codec.isEmpty()) codec = normalizeCodec(ascii(list, body + 4, 4));
+            } else if (id.equals("strf") && size >= 20 && streamType.equals("vids")) {
+                // BITMAPINFOHEADER compression, which names the codec more reliably than the stream handler
+                String compression = ascii(list, body + 16, 4);
+                if (compression.chars().allMatch(c -> c >= 0x20 && c < 0x7F)) codec = normalizeCodec(compression);
+            }
+            position = body + size + (size & 1);
+        }
+    }
+
+    // One name per codec whatever the container calls it, so files remuxed between containers compare equal
+    static String normalizeCodec(String name) {
+        String codec = name.trim().toLowerCase(Locale.ROOT);
+        return switch (codec) {
+            case "avc1", "avc3", "h264", "x264", "v_mpeg4/iso/avc" -> "h264";
+            case "hvc1", "hev1", "hevc", "h265", "x265", "v_mpegh/iso/hevc" -> "hevc";
+            case "mp4v", "xvid", "divx", "dx50", "fmp4", "v_mpeg4/iso/asp", "v_mpeg4/iso/sp" -> "mpeg4";
+            case "vp08", "vp80", "v_vp8" -> "vp8";
+            case "vp09", "vp90", "v_vp9" -> "vp9";
+            case "av01", "v_av1" -> "av1";
+            case "mjpg", "mjpa", "jpeg", "v_mjpeg" -> "mjpeg";
+            default -> codec;
+        };
+    }
+
+    // Reads a box or element body, or null when it is shorter than needed
+    private static byte[] read(RandomAccessFile in, long position, long size, int needed) throws IOException {
+        if (size < needed || size > MAX_ELEMENT_SIZE) return null;
+        byte[] bytes = new byte[(int) size];
+        read(in, position, bytes, bytes.length);
+        return bytes;
+    }
+
+    private static void read(RandomAccessFile in, long position, byte[] bytes, int length) throws IOException {
+        in.seek(position);
+        in.readFully(bytes, 0, length);
+    }
+
+    private static String ascii(byte[] bytes, int at, int length) {
+        return new String(bytes, at, length, StandardCharsets.ISO_8859_1);
+    }
+
+    private static int uint16BigEndian(byte[] bytes, int at) {
+        return (bytes[at] & 0xFF) << 8 | (bytes[at + 1] & 0xFF);
+    }
+
+    private static long uint32BigEndian(byte[] bytes, int at) {
+        return (bytes[at] & 0xFFL) << 24 | (bytes[at + 1] & 0xFFL) << 16 | (bytes[at + 2] & 0xFFL) << 8 | (bytes[at + 3] & 0xFFL);
+    }
+
+    private static long uint64BigEndian(byte[] bytes, int at) {
+        return uint32BigEndian(bytes, at) << 32 | uint32BigEndian(bytes, at + 4);
+    }
+
+    private static long uint32LittleEndian(byte[] bytes, int at) {
+        return (bytes[at] & 0xFFL) | (bytes[at + 1] & 0xFFL) << 8 | (bytes[at + 2] & 0xFFL) << 16 | (bytes[at + 3] & 0xFFL) << 24;
+    }
+
+    // Cursor over EBML elements in a byte range: variable-length IDs keep their length marker, sizes drop it
+    private static final class Ebml {
+        private final byte[] bytes;
+        private final int end;
+        private int position;
+        private long elementId;
+        private int bodyStart;
+        private int bodyEnd;
+
+        Ebml(byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            this.position = start;
+            this.bodyEnd = start;
+            this.end = end;
+        }
+
+        // The ID at the cursor, advancing past it, or -1 when it is not valid
+        long id() {
+            int length = vintLength(4);
+            if (length == 0) return -1;
+            long id = 0;
+            for (int i = 0; i < length; i++) {
+                id = id << 8 | (bytes[position++] & 0xFF);
+            }
+            return id;
+        }
+
+        // The size at the cursor, advancing past it: -1 when unknown, -2 when not valid
+        long size() {
+            int length = vintLength(8);
+            if (length == 0) return -2;
+            long size = bytes[position++] & (0xFF >> length);
+            boolean unknown = size == (0xFF >> length);
+            for (int i = 1; i < length; i++) {
+                int b = bytes[position++] & 0xFF;
+                unknown &= b == 0xFF;
+                size = size << 8 | b;
+            }
+            return unknown ? -1 : size;
+        }
+
+        // Moves to the next child element in range
+        boolean next() {
+            position = bodyEnd;
+            if (position >= end) return false;
+            elementId = id();
+            if (elementId < 0 || position >= end) return false;
+            long size = size();
+            if (size < 0 || size > end - position) return false;
+            bodyStart = position;
+            bodyEnd = position + (int) size;
+            return true;
+        }
+
+        Ebml children() {
+            return new Ebml(bytes, bodyStart, bodyEnd);
+        }
+
+        long unsigned() {
+            long value = 0;
+            for (int i = bodyStart; i < bodyEnd && i < bodyStart + 8; i++) {
+                value = value << 8 | (bytes[i] & 0xFF);
+            }
+            return value;
+        }
+
+        double floating() {
+            if (bodyEnd - bodyStart == 4) return Float.intBitsToFloat((int) unsigned());
+            if (bodyEnd - bodyStart == 8) return Double.longBitsToDouble(unsigned());
+            return 0;
+        }
+
+        String string() {
+            int length = bodyEnd - bodyStart;
+            while (length > 0 && bytes[bodyStart + length - 1] == 0) length--;
+            return new String(bytes, bodyStart, length, StandardCharsets.US_ASCII);
+        }
+
+        private int vintLength(int maxLength) {
+            if (position >= end) return 0;
+            int first = bytes[position] & 0xFF;
+            for (int length = 1; length <= maxLength; length++) {
+                if ((first & (0x80 >> (length - 1))) != 0) return position + length <= end ? length : 0;
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.appmanager.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Locale;
+
+// Splits streamed bytes into the words text similarity works on: the text is decoded with the default charset,
+// lowercased, and every run of [a-z0-9] is a word. Bytes may arrive in any chunks; a character split across two
+// updates is carried over.
+final class WordTokenizer {
+    interface WordConsumer {
+        // The word is only valid during the call; hash equals String.hashCode() of the word
+        void word(char[] word, int length, int hash) throws IOException;
+    }
+
+    private final WordConsumer consumer;
+    private final Locale locale = Locale.getDefault();
+    // Lowercase ASCII letter or digit for each ASCII char, 0 for separators
+    private final char[] asciiWordChars = new char[128];
+    private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(64 * 1024);
+    // Bytes of a character split across two updates
+    private byte[] carry = new byte[0];
+    private char[] word = new char[64];
+    private int wordLength = 0;
+    private int wordHash = 0;
+
+    WordTokenizer(WordConsumer consumer) {
+        this.consumer = consumer;
+        for (char c = 0; c < 128; c++) {
+            String lower = String.valueOf(c).toLowerCase(locale);
+            char l = lower.length() == 1 ? lower.charAt(0) : 0;
+            asciiWordChars[c] = isWordChar(l) ? l : 0;
+        }
+    }
+
+    void update(byte[] buffer, int offset, int length) throws IOException {
+        ByteBuffer input;
+        if (carry.length > 0) {
+            input = ByteBuffer.allocate(carry.length + length);
+            input.put(carry).put(buffer, offset, length).flip();
+        } else {
+            input = ByteBuffer.wrap(buffer, offset, length);
+        }
+        decode(input, false);
+        carry = new byte[input.remaining()];
+        input.get(carry);
+    }
+
+    // Emits the last word; call once after the final update
+    void finish() throws IOException {
+        decode(ByteBuffer.wrap(carry), true);
+        decoder.flush(chars);
+        consume();
+        endWord();
+    }
+
+    private void decode(ByteBuffer input, boolean endOfInput) throws IOException {
+        while (true) {
+            boolean overflow = decoder.decode(input, chars, endOfInput).isOverflow();
+            consume();
+            if (!overflow) return;
+        }
+    }
+
+    // Mirrors toLowerCase() followed by replacing everything outside [a-z0-9] with word breaks
+    private void consume() throws IOException {
+        char[] array = chars.array();
+        int end = chars.position();
+        for (int i = 0; i < end; i++) {
+            char c = array[i];
+            if (c < 128) {
+                char l = asciiWordChars[c];
+                if (l != 0) {
+                    append(l);
+                } else {
+                    endWord();
+                }
+            } else {
+                // A few non-ASCII characters lowercase to ASCII letters, e.g. the Kelvin sign to 'k'
+                String lower = String.valueOf(c).toLowerCase(locale);
+                for (int j = 0; j < lower.length(); j++) {
+                    char l = lower.charAt(j);
+                    if (isWordChar(l)) {
+                        append(l);
+                    } else {
+                        endWord();
+                    }
+                }
+            }
+        }
+        chars.clear();
+    }
+
+    private void append(char c) {
+        if (wordLength == word.length) {
+            word = Arrays.copyOf(word, wordLength * 2);
+        }
+        word[wordLength++] = c;
+        wordHash = 31 * wordHash + c;
+    }
+
+    private void endWord() throws IOException {
+        if (wordLength == 0) return;
+        consumer.word(word, wordLength, wordHash);
+        wordLength = 0;
+        wordHash = 0;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+}
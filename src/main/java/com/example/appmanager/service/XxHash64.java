@@ -0,0 +1,104 @@
+package com.example.appmanager.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+// Streaming XXH64 (seed 0): a fast non-cryptographic 64-bit hash, used to find candidate duplicates cheaply
+public final class XxHash64 {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private long v1 = PRIME1 + PRIME2;
+    private long v2 = PRIME2;
+    private long v3 = 0;
+    private long v4 = -PRIME1;
+    private long totalLength = 0;
+    // Input that did not fill a whole stripe yet
+    private final byte[] pending = new byte[STRIPE];
+    private int pendingLength = 0;
+
+    public void update(byte[] buffer, int offset, int length) {
+        totalLength += length;
+        int end = offset + length;
+        if (pendingLength > 0) {
+            int fill = Math.min(STRIPE - pendingLength, length);
+            System.arraycopy(buffer, offset, pending, pendingLength, fill);
+            pendingLength += fill;
+            offset += fill;
+            if (pendingLength < STRIPE) return;
+            consumeStripe(pending, 0);
+            pendingLength = 0;
+        }
+        for (; offset + STRIPE <= end; offset += STRIPE) {
+            consumeStripe(buffer, offset);
+        }
+        pendingLength = end - offset;
+        System.arraycopy(buffer, offset, pending, 0, pendingLength);
+    }
+
+    public long digest() {
+        long hash;
+        if (totalLength >= STRIPE) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += totalLength;
+
+        int i = 0;
+        for (; i + 8 <= pendingLength; i += 8) {
+            hash ^= round(0, (long) LONGS.get(pending, i));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (i + 4 <= pendingLength) {
+            hash ^= Integer.toUnsignedLong((int) INTS.get(pending, i)) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        for (; i < pendingLength; i++) {
+            hash ^= (pending[i] & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    // Digest as 16 lowercase hex digits
+    public String hexDigest() {
+        return String.format("%016x", digest());
+    }
+
+    private void consumeStripe(byte[] buffer, int offset) {
+        v1 = round(v1, (long) LONGS.get(buffer, offset));
+        v2 = round(v2, (long) LONGS.get(buffer, offset + 8));
+        v3 = round(v3, (long) LONGS.get(buffer, offset + 16));
+        v4 = round(v4, (long) LONGS.get(buffer, offset + 24));
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME1;
+    }
+
+    private static long mergeRound(long hash, long value) {
+        hash ^= round(0, value);
+        return hash * PRIME1 + PRIME4;
+    }
+}